@@ -0,0 +1,23 @@
+package benchmarks;
+
+import java.util.Arrays;
+
+/**
+ * The main class of the benchmarks jar. It runs the JMH command line with the gc profiler always
+ * enabled, so every result also reports the allocation rate and the bytes allocated per operation.
+ *     java -jar benchmarks/target/benchmarks.jar [jmh options] [benchmark regexps]
+ */
+public class BenchmarkMain {
+    private static final String[] GC_PROFILER = {"-prof", "gc"};
+
+    /**
+     * Runs the benchmarks
+     * @param args the JMH command line
+     * @throws Exception if JMH fails
+     */
+    public static void main(String[] args) throws Exception {
+        String[] withProfiler = Arrays.copyOf(GC_PROFILER, GC_PROFILER.length + args.length);
+        System.arraycopy(args, 0, withProfiler, GC_PROFILER.length, args.length);
+        org.openjdk.jmh.Main.main(withProfiler);
+    }
+}
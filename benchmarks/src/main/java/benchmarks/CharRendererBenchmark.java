@@ -0,0 +1,58 @@
+package benchmarks;
+
+import ascii_art.img_to_char.CharRenderer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Getting the bitmaps of the chars of a charset. The bitmaps are cached for the whole process, so after
+ * the first iteration this measures the lookups a render makes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CharRendererBenchmark {
+    private static final String FONT = "Courier New";
+    private static final int PIXELS = 16;
+
+    @Param({"10", "26", "95"})
+    private int charsetSize;
+
+    private char[] chars;
+
+    @Setup
+    public void setup() {
+        Character[] charset = Fixtures.charset(this.charsetSize);
+        this.chars = new char[charset.length];
+        for (int i = 0; i < charset.length; i++) {
+            this.chars[i] = charset[i];
+        }
+    }
+
+    @Benchmark
+    public void getImg(Blackhole blackhole) {
+        for (char c : this.chars) {
+            blackhole.consume(CharRenderer.getImg(c, PIXELS, FONT));
+        }
+    }
+
+    @Benchmark
+    public boolean[][][] getImgs() {
+        return CharRenderer.getImgs(this.chars, PIXELS, FONT);
+    }
+}
@@ -0,0 +1,59 @@
+package benchmarks;
+
+import ascii_art.img_to_char.BrightnessImgCharMatcher;
+import ascii_art.img_to_char.Dithering;
+import image.Image;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Matching brightnesses that were already computed to the digits, with every dithering, up to very wide
+ * outputs. The difference to NONE is the cost of the dithering.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dascii_art.glyphCache=")
+public class DitheringBenchmark {
+    private static final String FONT = "Courier New";
+    private static final int IMAGE_WIDTH = 2048;
+    private static final int CHARSET_SIZE = 10;
+
+    @Param({"128", "512", "1024"})
+    private int charsInRow;
+
+    @Param({"NONE", "FLOYD_STEINBERG", "ORDERED"})
+    private Dithering dithering;
+
+    private Character[] charset;
+    private BrightnessImgCharMatcher matcher;
+    private float[][] brightness;
+
+    @Setup
+    public void setup() {
+        Image img = Image.fromFile(TestImages.path(IMAGE_WIDTH));
+        this.charset = Fixtures.charset(CHARSET_SIZE);
+        this.matcher = new BrightnessImgCharMatcher(img, FONT);
+        this.matcher.setDithering(this.dithering);
+        this.brightness = this.matcher.cellBrightness(Fixtures.charsInRow(img, this.charsInRow));
+        this.matcher.chooseChars(this.brightness, this.charset);
+    }
+
+    @Benchmark
+    public char[][] chooseChars() {
+        return this.matcher.chooseChars(this.brightness, this.charset);
+    }
+}
@@ -0,0 +1,58 @@
+package benchmarks;
+
+import image.Image;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoding the image files, fully and subsampled to the resolution of the ascii art, and mapping the
+ * decoded pixels from the decoded image cache (the first call of the fork fills it)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FileImageBenchmark {
+    @Param({"256", "1024", "2048"})
+    private int imageWidth;
+
+    @Param({"32", "128", "512"})
+    private int charsInRow;
+
+    private String path;
+
+    @Setup
+    public void setup() {
+        this.path = TestImages.path(this.imageWidth);
+    }
+
+    @Benchmark
+    public Image fromFile() {
+        return Image.fromFile(this.path);
+    }
+
+    @Benchmark
+    public Image loadSubsampled() throws IOException {
+        return Image.load(this.path, this.charsInRow);
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = "-Dascii_art.imageCache=target/image-cache")
+    public Image fromFileCached() {
+        return Image.fromFile(this.path);
+    }
+}
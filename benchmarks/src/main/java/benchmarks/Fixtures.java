@@ -0,0 +1,43 @@
+package benchmarks;
+
+import image.Image;
+
+/**
+ * The inputs that the benchmarks share
+ */
+class Fixtures {
+    private static final int MIN_PIXELS_PER_CHAR = 2;
+    private static final char FIRST_CHAR = 32;
+    private static final char LAST_CHAR = 126;
+
+    /**
+     * Function that creates a charset of a given size: the digits, the lower case letters or all the
+     * printable ascii chars
+     * @param size 10, 26 or 95
+     * @return the chars
+     */
+    static Character[] charset(int size) {
+        char first;
+        switch (size) {
+            case 10: first = '0'; break;
+            case 26: first = 'a'; break;
+            case LAST_CHAR - FIRST_CHAR + 1: first = FIRST_CHAR; break;
+            default: throw new IllegalArgumentException("No charset of size " + size);
+        }
+        Character[] charset = new Character[size];
+        for (int i = 0; i < size; i++) {
+            charset[i] = (char) (first + i);
+        }
+        return charset;
+    }
+
+    /**
+     * Function that limits a number of chars in a row to what an image allows, like the shell does
+     * @param img the image
+     * @param charsInRow the wanted number of chars in a row
+     * @return the number of chars in a row that is rendered
+     */
+    static int charsInRow(Image img, int charsInRow) {
+        return Math.min(charsInRow, img.getWidth() / MIN_PIXELS_PER_CHAR);
+    }
+}
@@ -0,0 +1,53 @@
+package benchmarks;
+
+import ascii_art.img_to_char.BrightnessImgCharMatcher;
+import image.Image;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building the summed-area table of an image (the luminance pass) and averaging its cells, with the
+ * vector luminance kernel and with the scalar one. The kernel is chosen by the options of the fork.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class LuminanceBenchmark {
+    private static final String FONT = "Courier New";
+    private static final int CHARS_IN_ROW = 128;
+
+    @Param({"256", "1024", "2048"})
+    private int imageWidth;
+
+    private Image img;
+
+    @Setup
+    public void setup() {
+        this.img = Image.fromFile(TestImages.path(this.imageWidth));
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = {"--add-modules=jdk.incubator.vector"})
+    public float[][] vector() {
+        return new BrightnessImgCharMatcher(this.img, FONT).cellBrightness(CHARS_IN_ROW);
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = {"-Dascii_art.simd=false"})
+    public float[][] scalar() {
+        return new BrightnessImgCharMatcher(this.img, FONT).cellBrightness(CHARS_IN_ROW);
+    }
+}
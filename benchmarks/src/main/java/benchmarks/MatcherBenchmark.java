@@ -0,0 +1,85 @@
+package benchmarks;
+
+import ascii_art.img_to_char.BrightnessImgCharMatcher;
+import ascii_art.img_to_char.ImgCharMatcher;
+import ascii_art.img_to_char.ShapeImgCharMatcher;
+import image.Image;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Matching the sub images to chars: a render of a new image (summed-area table included), and a new
+ * match of brightnesses that were already computed, like the shell does after the chars change, and a
+ * render of a new image by the shape of the chars. The resized brightnesses use a grid that does not
+ * split the image into whole pixels, with the rows of terminal chars (twice as high as wide), like an
+ * interactive resize.
+ * The glyph cache file is disabled, so no run depends on the disk state of another.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dascii_art.glyphCache=")
+public class MatcherBenchmark {
+    private static final String FONT = "Courier New";
+    private static final double TERMINAL_CHAR_ASPECT = 2;
+
+    @Param({"256", "1024", "2048"})
+    private int imageWidth;
+
+    @Param({"32", "128", "512"})
+    private int charsInRow;
+
+    @Param({"10", "26", "95"})
+    private int charsetSize;
+
+    private Image img;
+    private int cols;
+    private Character[] charset;
+    private BrightnessImgCharMatcher cachedMatcher;
+    private float[][] brightness;
+
+    @Setup
+    public void setup() {
+        this.img = Image.fromFile(TestImages.path(this.imageWidth));
+        this.cols = Fixtures.charsInRow(this.img, this.charsInRow);
+        this.charset = Fixtures.charset(this.charsetSize);
+        this.cachedMatcher = new BrightnessImgCharMatcher(this.img, FONT);
+        this.brightness = this.cachedMatcher.cellBrightness(this.cols);
+        this.cachedMatcher.chooseChars(this.brightness, this.charset);
+    }
+
+    @Benchmark
+    public char[][] chooseChars() {
+        return new BrightnessImgCharMatcher(this.img, FONT).chooseChars(this.cols, this.charset);
+    }
+
+    @Benchmark
+    public char[][] chooseCharsCached() {
+        return this.cachedMatcher.chooseChars(this.brightness, this.charset);
+    }
+
+    @Benchmark
+    public char[][] chooseCharsByShape() {
+        return new ShapeImgCharMatcher(this.img, FONT).chooseChars(this.cols, this.charset);
+    }
+
+    @Benchmark
+    public float[][] cellBrightnessResized() {
+        int resizedCols = this.cols - 1;
+        return this.cachedMatcher.cellBrightness(resizedCols,
+                ImgCharMatcher.cellRows(this.img, resizedCols, TERMINAL_CHAR_ASPECT));
+    }
+}
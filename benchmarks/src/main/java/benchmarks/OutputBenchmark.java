@@ -0,0 +1,88 @@
+package benchmarks;
+
+import ascii_art.img_to_char.BrightnessImgCharMatcher;
+import ascii_output.ConsoleAsciiOutput;
+import ascii_output.HtmlAsciiOutput;
+import image.Image;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writing a rendered ascii art through the console and html sinks, plain and colored, to a stream that
+ * discards the bytes
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dascii_art.glyphCache=")
+public class OutputBenchmark {
+    private static final String FONT = "Courier New";
+    private static final int IMAGE_WIDTH = 2048;
+
+    @Param({"32", "128", "512"})
+    private int charsInRow;
+
+    @Param({"10", "95"})
+    private int charsetSize;
+
+    private char[][] chars;
+    private int[][] colors;
+    private ConsoleAsciiOutput console;
+    private HtmlAsciiOutput html;
+    private HtmlAsciiOutput gzipHtml;
+
+    @Setup
+    public void setup() {
+        Image img = Image.fromFile(TestImages.path(IMAGE_WIDTH));
+        BrightnessImgCharMatcher matcher = new BrightnessImgCharMatcher(img, FONT);
+        int cols = Fixtures.charsInRow(img, this.charsInRow);
+        this.colors = new int[matcher.cellRows(cols)][cols];
+        this.chars = matcher.chooseChars(matcher.cellBrightness(cols, this.colors),
+                Fixtures.charset(this.charsetSize));
+
+        OutputStream discard = OutputStream.nullOutputStream();
+        this.console = new ConsoleAsciiOutput(discard, StandardCharsets.UTF_8);
+        this.html = new HtmlAsciiOutput(discard, FONT, false);
+        this.gzipHtml = new HtmlAsciiOutput(discard, FONT, true);
+    }
+
+    @Benchmark
+    public void console() {
+        this.console.output(this.chars);
+    }
+
+    @Benchmark
+    public void consoleColored() {
+        this.console.output(this.chars, this.colors);
+    }
+
+    @Benchmark
+    public void html() {
+        this.html.output(this.chars);
+    }
+
+    @Benchmark
+    public void htmlColored() {
+        this.html.output(this.chars, this.colors);
+    }
+
+    @Benchmark
+    public void htmlGzip() {
+        this.gzipHtml.output(this.chars);
+    }
+}
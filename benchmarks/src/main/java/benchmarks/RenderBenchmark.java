@@ -0,0 +1,74 @@
+package benchmarks;
+
+import ascii_art.img_to_char.BrightnessImgCharMatcher;
+import ascii_output.ConsoleAsciiOutput;
+import image.Image;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.BitSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A steady-state render, matching brightnesses that were already computed and writing the chars to a
+ * console that discards the bytes, once into a new array of chars and once into the array of the last
+ * render. The gc.alloc.rate.norm of reused is the allocation of a render that changes nothing.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dascii_art.glyphCache=")
+public class RenderBenchmark {
+    private static final String FONT = "Courier New";
+    private static final int IMAGE_WIDTH = 2048;
+    private static final int CHARSET_SIZE = 95;
+
+    @Param({"128", "512"})
+    private int charsInRow;
+
+    private Character[] charset;
+    private BitSet charCodes;
+    private BrightnessImgCharMatcher matcher;
+    private float[][] brightness;
+    private char[][] chars;
+    private ConsoleAsciiOutput console;
+
+    @Setup
+    public void setup() {
+        Image img = Image.fromFile(TestImages.path(IMAGE_WIDTH));
+        this.charset = Fixtures.charset(CHARSET_SIZE);
+        this.charCodes = new BitSet();
+        for (Character character : this.charset) {
+            this.charCodes.set(character);
+        }
+        this.matcher = new BrightnessImgCharMatcher(img, FONT);
+        this.brightness = this.matcher.cellBrightness(Fixtures.charsInRow(img, this.charsInRow));
+        this.chars = this.matcher.chooseChars(this.brightness, this.charCodes, null);
+        this.console = new ConsoleAsciiOutput(OutputStream.nullOutputStream(), StandardCharsets.UTF_8);
+        this.console.output(this.chars);
+    }
+
+    @Benchmark
+    public void fresh() {
+        this.console.output(this.matcher.chooseChars(this.brightness, this.charset));
+    }
+
+    @Benchmark
+    public void reused() {
+        this.chars = this.matcher.chooseChars(this.brightness, this.charCodes, this.chars);
+        this.console.output(this.chars);
+    }
+}
@@ -0,0 +1,67 @@
+package benchmarks;
+
+import image.Image;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Iterating the sub images of an image and their pixels, through Color objects and through packed ints
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SubImagesBenchmark {
+    @Param({"256", "1024", "2048"})
+    private int imageWidth;
+
+    @Param({"32", "128", "512"})
+    private int charsInRow;
+
+    private Image img;
+    private int subSize;
+
+    @Setup
+    public void setup() {
+        this.img = Image.fromFile(TestImages.path(this.imageWidth));
+        this.subSize = this.img.getWidth() / Fixtures.charsInRow(this.img, this.charsInRow);
+    }
+
+    @Benchmark
+    public long pixels() {
+        long sum = 0;
+        for (Image sub : this.img.subImages(this.subSize)) {
+            for (Color color : sub.pixels()) {
+                sum += color.getGreen();
+            }
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long getRGB() {
+        long sum = 0;
+        for (Image sub : this.img.subImages(this.subSize)) {
+            for (int y = 0; y < sub.getHeight(); y++) {
+                for (int x = 0; x < sub.getWidth(); x++) {
+                    sum += (sub.getRGB(x, y) >> 8) & 0xFF;
+                }
+            }
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,115 @@
+package benchmarks;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The generated test images of the benchmarks. They are checked into the resources of this module, so
+ * every run measures the same pixels, and can be generated again by running this class.
+ */
+public class TestImages {
+    /** The widths of the images, the heights are 3/4 of them */
+    public static final int[] WIDTHS = {256, 1024, 2048};
+    private static final String RESOURCE_FORMAT = "/images/image-%d.jpg";
+    private static final String FILE_FORMAT = "image-%d.jpg";
+    private static final String DEFAULT_OUTPUT_DIR = "benchmarks/src/main/resources/images";
+    private static final Map<Integer, Path> EXTRACTED = new HashMap<>();
+
+    /**
+     * Generates the images into the resources directory
+     * @param args the output directory, by default the resources of this module
+     * @throws IOException if an image cannot be written
+     */
+    public static void main(String[] args) throws IOException {
+        File dir = new File(args.length > 0 ? args[0] : DEFAULT_OUTPUT_DIR);
+        for (int width : WIDTHS) {
+            File file = new File(dir, String.format(FILE_FORMAT, width));
+            ImageIO.write(generate(width, width * 3 / 4), "jpg", file);
+        }
+    }
+
+    /**
+     * Returns a path to a test image on disk, the image is copied out of the jar on the first call
+     * @param width the width of the image, one of WIDTHS
+     * @return the path of the image file
+     */
+    public static synchronized String path(int width) {
+        Path path = EXTRACTED.get(width);
+        if (path == null) {
+            String resource = String.format(RESOURCE_FORMAT, width);
+            try (InputStream in = TestImages.class.getResourceAsStream(resource)) {
+                if (in == null) {
+                    throw new IllegalArgumentException("No test image of width " + width);
+                }
+                path = Files.createTempFile("benchmark-image-" + width, ".jpg");
+                path.toFile().deleteOnExit();
+                Files.copy(in, path, StandardCopyOption.REPLACE_EXISTING);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            EXTRACTED.put(width, path);
+        }
+        return path.toString();
+    }
+
+    /**
+     * Returns the bytes of a test image file
+     * @param width the width of the image, one of WIDTHS
+     * @return the content of the jpeg file
+     */
+    public static byte[] bytes(int width) {
+        try {
+            return Files.readAllBytes(Paths.get(path(width)));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Function that draws a test image: smooth color gradients with sharp shapes and text on top, so
+     * both flat areas and edges are rendered
+     * @param width the width of the image
+     * @param height the height of the image
+     * @return the image
+     */
+    static BufferedImage generate(int width, int height) {
+        BufferedImage img = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                double u = (double) x / width;
+                double v = (double) y / height;
+                int red = (int) (255 * u);
+                int green = (int) (255 * v);
+                int blue = (int) (127.5 + 127.5 * Math.sin(6 * Math.PI * u * v));
+                img.setRGB(x, y, (red << 16) | (green << 8) | blue);
+            }
+        }
+
+        Graphics2D g = img.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g.setColor(Color.BLACK);
+        g.fillOval(width / 8, height / 8, width / 3, height / 3);
+        g.setColor(Color.WHITE);
+        g.fillRect(width / 2, height / 2, width / 4, height / 3);
+        g.setColor(new Color(40, 40, 40));
+        g.setStroke(new BasicStroke(Math.max(1, width / 128f)));
+        for (int i = 0; i < 8; i++) {
+            g.drawLine(0, i * height / 8, width, height - i * height / 8);
+        }
+        g.setFont(new Font(Font.MONOSPACED, Font.BOLD, Math.max(8, width / 12)));
+        g.drawString("ASCII", width / 16, height * 15 / 16);
+        g.dispose();
+        return img;
+    }
+}
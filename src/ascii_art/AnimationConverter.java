@@ -0,0 +1,342 @@
+package ascii_art;
+
+import ascii_art.img_to_char.BrightnessImgCharMatcher;
+import ascii_art.img_to_char.DeltaCharMatcher;
+import ascii_art.img_to_char.ImgCharMatcher;
+import ascii_output.AsciiAnimationOutput;
+import ascii_output.ConsoleAnimationOutput;
+import ascii_output.HtmlAnimationOutput;
+import image.FrameSequence;
+import image.Image;
+
+import java.io.IOException;
+import java.util.PriorityQueue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The class that converts a sequence of frames (an animated GIF or a directory of numbered images) to an
+ * ascii animation.
+ * The conversion is a pipeline of four stages that are joined by bounded queues, so every stage runs
+ * on its own thread(s) and only a few frames are in memory at any time:
+ * decoding, brightness (the summed-area table of every frame, on several threads),
+ * matching to chars, and writing (which puts the frames back in order). A frame is decoded only when it
+ * is close enough to the next frame to write, so a slow frame cannot make the writer keep the frames
+ * after it without limit.
+ * In delta mode the frames are converted one after the other instead, matching again only the chars
+ * that changed since the previous frame, and the output redraws only them.
+ */
+public class AnimationConverter {
+    /** options */
+    private static final String RES_OPTION = "-res";
+    private static final String CHARS_OPTION = "-chars";
+    private static final String OUT_OPTION = "-out";
+    private static final String FILE_OPTION = "-file";
+    private static final String DELTA_OPTION = "-delta";
+    private static final String HTML_OUTPUT = "html";
+    private static final String CONSOLE_OUTPUT = "console";
+    /** messages */
+    private static final String USAGE_MSG = "USAGE: java ascii_art.Driver --animate [-res chars] " +
+            "[-chars 0-9,a-z,space,all] [-out html|console] [-file out.html] [-delta] " +
+            "gifFile|framesDirectory";
+    private static final String FAILED_MSG = "Failed to convert %s: %s%n";
+    /** defaults variables */
+    private static final String DEFAULT_FONT = "Courier New";
+    private static final String DEFAULT_CHARS = "0-9";
+    private static final String DEFAULT_OUTPUT_FILE = "out.html";
+    private static final int DEFAULT_CHARS_IN_ROW = 64;
+    private static final int MIN_PIXELS_PER_CHAR = 2;
+    private static final double SQUARE_CHARS = 1; // the aspect of the chars, as in DeltaCharMatcher
+    private static final int QUEUE_CAPACITY = 4; // frames waiting between two stages
+    private static final int NON_BRIGHTNESS_STAGES = 3;
+
+    private final int charsInRow;
+    private final Character[] charset;
+    private final int brightnessThreads;
+
+    /**
+     * A frame that moves through the pipeline, or the end of the sequence when value is null
+     * @param <T> the form of the frame in the current stage
+     */
+    private static class Frame<T> implements Comparable<Frame<?>> {
+        private final int index;
+        private final int delayMillis;
+        private final T value;
+
+        Frame(int index, int delayMillis, T value) {
+            this.index = index;
+            this.delayMillis = delayMillis;
+            this.value = value;
+        }
+
+        boolean isEnd() {
+            return this.value == null;
+        }
+
+        @Override
+        public int compareTo(Frame<?> other) {
+            return Integer.compare(this.index, other.index);
+        }
+    }
+
+    /**
+     * The constructor of the converter
+     * @param charsInRow the number of chars in a row of every frame
+     * @param charset the chars to render with
+     * @param brightnessThreads the number of threads of the brightness stage
+     */
+    public AnimationConverter(int charsInRow, Character[] charset, int brightnessThreads) {
+        this.charsInRow = charsInRow;
+        this.charset = charset;
+        this.brightnessThreads = brightnessThreads;
+    }
+
+    /**
+     * Parses the command line of the animation mode and converts the frames
+     * @param args the arguments after --animate
+     */
+    public static void main(String[] args) {
+        int charsInRow = DEFAULT_CHARS_IN_ROW;
+        String chars = DEFAULT_CHARS;
+        String outputType = HTML_OUTPUT;
+        String outputFile = DEFAULT_OUTPUT_FILE;
+        String input = null;
+        boolean delta = false;
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case RES_OPTION: charsInRow = Integer.parseInt(args[++i]); break;
+                    case CHARS_OPTION: chars = args[++i]; break;
+                    case OUT_OPTION: outputType = args[++i]; break;
+                    case FILE_OPTION: outputFile = args[++i]; break;
+                    case DELTA_OPTION: delta = true; break;
+                    default: input = input == null ? args[i] : ""; break;
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
+            input = null;
+        }
+        Character[] charset = BatchConverter.parseCharset(chars);
+        if (input == null || input.isEmpty() || charsInRow < 1 || charset.length == 0 ||
+                !(outputType.equals(HTML_OUTPUT) || outputType.equals(CONSOLE_OUTPUT))) {
+            System.err.println(USAGE_MSG);
+            return;
+        }
+
+        AsciiAnimationOutput output = outputType.equals(HTML_OUTPUT) ?
+                new HtmlAnimationOutput(outputFile, DEFAULT_FONT) : new ConsoleAnimationOutput();
+        int brightnessThreads = Math.max(1,
+                Runtime.getRuntime().availableProcessors() - NON_BRIGHTNESS_STAGES);
+        try (FrameSequence frames = FrameSequence.open(input, charsInRow)) {
+            AnimationConverter converter = new AnimationConverter(charsInRow, charset, brightnessThreads);
+            if (delta) {
+                converter.convertChanges(frames, output);
+            } else {
+                converter.convert(frames, output);
+            }
+        } catch (IOException e) {
+            System.err.printf(FAILED_MSG, input, e.getMessage());
+        }
+    }
+
+    /**
+     * Converts all the frames of a sequence and writes them to an animation output
+     * @param frames the frames to convert
+     * @param output the animation output
+     * @return the number of frames that were written
+     * @throws IOException if a frame cannot be decoded
+     */
+    public int convert(FrameSequence frames, AsciiAnimationOutput output) throws IOException {
+        BlockingQueue<Frame<Image>> decoded = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        BlockingQueue<Frame<float[][]>> brightness = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        BlockingQueue<Frame<char[][]>> matched = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        AtomicInteger runningBrightnessThreads = new AtomicInteger(this.brightnessThreads);
+        // the frames between the next frame to write and the last decoded frame, every stage holds a few
+        Semaphore window = new Semaphore(this.brightnessThreads + QUEUE_CAPACITY);
+
+        ExecutorService stages = ThreadPools.newCpuExecutor("animation",
+                this.brightnessThreads + NON_BRIGHTNESS_STAGES);
+        CompletionService<Object> completion = new ExecutorCompletionService<>(stages);
+        try {
+            completion.submit(() -> decodeStage(frames, decoded, window));
+            for (int i = 0; i < this.brightnessThreads; i++) {
+                completion.submit(() -> brightnessStage(decoded, brightness, runningBrightnessThreads));
+            }
+            completion.submit(() -> matchStage(brightness, matched));
+            Future<Object> written = completion.submit(() -> writeStage(matched, output, window));
+
+            // waits for the stages in the order they finish, so the first failure stops the others
+            for (int i = 0; i < this.brightnessThreads + NON_BRIGHTNESS_STAGES; i++) {
+                completion.take().get();
+            }
+            return (Integer) written.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException(cause.getMessage() == null ? cause.toString() : cause.getMessage(), cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while converting the frames", e);
+        } finally {
+            stages.shutdownNow(); // stops the other stages if one of them failed
+            output.finish();
+        }
+    }
+
+    /**
+     * Converts all the frames of a sequence one after the other, matching again only the chars whose
+     * sub image changed, and writes only the changed chars to the animation output
+     * @param frames the frames to convert
+     * @param output the animation output
+     * @return the number of frames that were written
+     * @throws IOException if a frame cannot be decoded
+     */
+    public int convertChanges(FrameSequence frames, AsciiAnimationOutput output) throws IOException {
+        DeltaCharMatcher matcher = new DeltaCharMatcher(DEFAULT_FONT);
+        int written = 0;
+        try {
+            for (Image frame = frames.nextFrame(); frame != null; frame = frames.nextFrame()) {
+                char[][] chars = matcher.chooseChars(frame, frameCharsInRow(frame), this.charset);
+                output.outputChanges(chars, matcher.getChangedCells(), matcher.getChangedCount(),
+                        frames.getFrameDelay());
+                written++;
+            }
+        } finally {
+            output.finish();
+        }
+        return written;
+    }
+
+    /**
+     * The first stage, decodes the frames one after the other
+     * @param frames the frames to decode
+     * @param decoded the queue of the decoded frames
+     * @param window the permits of the frames that were decoded and not written yet
+     * @return nothing, to be submitted as a callable that may throw
+     * @throws IOException if a frame cannot be decoded
+     * @throws InterruptedException if another stage failed
+     */
+    private Void decodeStage(FrameSequence frames, BlockingQueue<Frame<Image>> decoded, Semaphore window)
+            throws IOException, InterruptedException {
+        int index = 0;
+        window.acquire();
+        for (Image frame = frames.nextFrame(); frame != null; frame = frames.nextFrame()) {
+            decoded.put(new Frame<>(index++, frames.getFrameDelay(), frame));
+            window.acquire();
+        }
+        window.release(); // the end of the sequence needs no permit
+        decoded.put(new Frame<>(index, 0, null));
+        return null;
+    }
+
+    /**
+     * The second stage, builds the summed-area table of every frame and calculates the brightness of its
+     * chars. Runs on several threads, so the frames leave this stage out of order. Every thread builds
+     * the tables of its frames in the arrays of its last frame.
+     * @param decoded the queue of the decoded frames
+     * @param brightness the queue of the brightness grids
+     * @param running the number of threads of this stage that did not finish yet
+     * @return nothing, to be submitted as a callable that may throw
+     * @throws InterruptedException if another stage failed
+     */
+    private Void brightnessStage(BlockingQueue<Frame<Image>> decoded,
+                                 BlockingQueue<Frame<float[][]>> brightness,
+                                 AtomicInteger running) throws InterruptedException {
+        BrightnessImgCharMatcher matcher = null;
+        while (true) {
+            Frame<Image> frame = decoded.take();
+            if (frame.isEnd()) {
+                decoded.put(frame); // for the other threads of this stage
+                if (running.decrementAndGet() == 0) {
+                    brightness.put(new Frame<>(frame.index, 0, null));
+                }
+                return null;
+            }
+            Image img = frame.value;
+            if (matcher == null) {
+                matcher = new BrightnessImgCharMatcher(img, DEFAULT_FONT);
+            } else {
+                matcher.setImage(img);
+            }
+            int frameCharsInRow = frameCharsInRow(img);
+            float[][] grid = matcher.cellBrightness(frameCharsInRow,
+                    ImgCharMatcher.cellRows(img, frameCharsInRow, SQUARE_CHARS));
+            brightness.put(new Frame<>(frame.index, frame.delayMillis, grid));
+        }
+    }
+
+    /**
+     * The third stage, matches the brightness of every char to a char of the set. The matcher keeps
+     * the brightness table of the chars, so it is created once and used for all the frames.
+     * @param brightness the queue of the brightness grids
+     * @param matched the queue of the chars of the frames
+     * @return nothing, to be submitted as a callable that may throw
+     * @throws InterruptedException if another stage failed
+     */
+    private Void matchStage(BlockingQueue<Frame<float[][]>> brightness,
+                            BlockingQueue<Frame<char[][]>> matched) throws InterruptedException {
+        BrightnessImgCharMatcher matcher = null;
+        while (true) {
+            Frame<float[][]> frame = brightness.take();
+            if (frame.isEnd()) {
+                matched.put(new Frame<>(frame.index, 0, null));
+                return null;
+            }
+            if (matcher == null) {
+                matcher = new BrightnessImgCharMatcher(DEFAULT_FONT); // only matches grids
+            }
+            char[][] chars = matcher.chooseChars(frame.value, this.charset);
+            matched.put(new Frame<>(frame.index, frame.delayMillis, chars));
+        }
+    }
+
+    /**
+     * Method that limits the resolution of the conversion to what a frame can show
+     * @param frame the frame
+     * @return the number of chars in a row of the frame
+     */
+    private int frameCharsInRow(Image frame) {
+        return Math.min(this.charsInRow, Math.max(1, frame.getWidth() / MIN_PIXELS_PER_CHAR));
+    }
+
+    /**
+     * The last stage, writes the frames in their original order. The frames that arrive before the next
+     * frame to write wait here, at most as many as the window of the decoder allows.
+     * @param matched the queue of the chars of the frames
+     * @param output the animation output
+     * @param window the permits of the frames that were decoded and not written yet
+     * @return the number of frames that were written
+     * @throws InterruptedException if another stage failed
+     */
+    private Integer writeStage(BlockingQueue<Frame<char[][]>> matched, AsciiAnimationOutput output,
+                               Semaphore window) throws InterruptedException {
+        PriorityQueue<Frame<char[][]>> waiting = new PriorityQueue<>();
+        int nextIndex = 0;
+        int frameCount = -1;
+        while (frameCount < 0 || nextIndex < frameCount) {
+            Frame<char[][]> frame = matched.take();
+            if (frame.isEnd()) {
+                frameCount = frame.index;
+            } else {
+                waiting.add(frame);
+            }
+            while (!waiting.isEmpty() && waiting.peek().index == nextIndex) {
+                Frame<char[][]> next = waiting.poll();
+                output.outputFrame(next.value, next.delayMillis);
+                nextIndex++;
+                window.release();
+            }
+        }
+        return nextIndex;
+    }
+}
@@ -0,0 +1,332 @@
+package ascii_art;
+
+import ascii_art.img_to_char.BrightnessImgCharMatcher;
+import ascii_output.ConsoleAsciiOutput;
+import ascii_output.HtmlAsciiOutput;
+import image.Image;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * The class that converts many images without the interactive shell.
+ * Every file is decoded on an I/O executor and rendered and written on a bounded pool of
+ * platform threads. A failure of one file is reported and does not stop the others.
+ */
+public class BatchConverter {
+    /** options */
+    private static final String RES_OPTION = "-res";
+    private static final String CHARS_OPTION = "-chars";
+    private static final String OUT_OPTION = "-out";
+    private static final String DIR_OPTION = "-dir";
+    private static final String THREADS_OPTION = "-threads";
+    private static final String GZIP_OPTION = "-gzip";
+    private static final String HTML_OUTPUT = "html";
+    private static final String CONSOLE_OUTPUT = "console";
+    private static final String ALL_CHARS = "all";
+    private static final String SPACE_CHARS = "space";
+    private static final String CHARS_SEPARATOR = ",";
+    private static final char RANGE_CHAR = '-';
+    private static final String GLOB_CHARS = "*?[{";
+    /** messages */
+    private static final String USAGE_MSG = "USAGE: java ascii_art.Driver --batch [-res chars] " +
+            "[-chars 0-9,a-z,space,all] [-out html|console] [-dir outputDir] [-threads n] [-gzip] " +
+            "paths|globs...";
+    private static final String FAILED_MSG = "FAILED %s: %s%n";
+    private static final String SAME_OUTPUT_MSG = "%s is already the output of %s";
+    private static final String SUMMARY_MSG = "Converted %d of %d images in %.2f s (%.1f images/s, %.2f MB/s)%n";
+    /** defaults variables */
+    private static final String DEFAULT_FONT = "Courier New";
+    private static final String DEFAULT_CHARS = "0-9";
+    private static final int DEFAULT_CHARS_IN_ROW = 64;
+    private static final int FIRST_CHAR = 32;
+    private static final int LAST_CHAR = 126;
+    private static final int MIN_PIXELS_PER_CHAR = 2;
+    private static final String HTML_SUFFIX = ".html";
+    private static final String GZIP_SUFFIX = ".gz";
+    private static final int IN_FLIGHT_PER_THREAD = 2; // decoded images waiting for a render thread
+    private static final double NANOS_PER_SECOND = 1e9;
+    private static final double BYTES_PER_MB = 1024.0 * 1024.0;
+
+    private final int charsInRow;
+    private final Character[] charset;
+    private final String outputType;
+    private final Path outputDir;
+    private final int threads;
+    private final boolean gzip;
+    private final Object consoleLock = new Object();
+
+    /**
+     * The constructor of the converter
+     * @param charsInRow the number of chars in a row of every ascii art
+     * @param charset the chars to render with
+     * @param outputType html or console
+     * @param outputDir the directory of the html files
+     * @param threads the number of render threads
+     * @param gzip whether to gzip compress the html files
+     */
+    public BatchConverter(int charsInRow, Character[] charset, String outputType, Path outputDir,
+                          int threads, boolean gzip) {
+        this.charsInRow = charsInRow;
+        this.charset = charset;
+        this.outputType = outputType;
+        this.outputDir = outputDir;
+        this.threads = threads;
+        this.gzip = gzip;
+    }
+
+    /**
+     * Parses the command line of the batch mode and converts the files
+     * @param args the arguments after --batch
+     */
+    public static void main(String[] args) {
+        int charsInRow = DEFAULT_CHARS_IN_ROW;
+        String chars = DEFAULT_CHARS;
+        String outputType = HTML_OUTPUT;
+        Path outputDir = Paths.get("");
+        int threads = Runtime.getRuntime().availableProcessors();
+        boolean gzip = false;
+        List<String> inputs = new ArrayList<>();
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case RES_OPTION: charsInRow = Integer.parseInt(args[++i]); break;
+                    case CHARS_OPTION: chars = args[++i]; break;
+                    case OUT_OPTION: outputType = args[++i]; break;
+                    case DIR_OPTION: outputDir = Paths.get(args[++i]); break;
+                    case THREADS_OPTION: threads = Integer.parseInt(args[++i]); break;
+                    case GZIP_OPTION: gzip = true; break;
+                    default: inputs.add(args[i]); break;
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
+            inputs.clear();
+        }
+        Character[] charset = parseCharset(chars);
+        if (inputs.isEmpty() || charsInRow < 1 || threads < 1 || charset.length == 0 ||
+                !(outputType.equals(HTML_OUTPUT) || outputType.equals(CONSOLE_OUTPUT))) {
+            System.err.println(USAGE_MSG);
+            return;
+        }
+
+        List<Path> files;
+        try {
+            files = expand(inputs);
+        } catch (IOException e) {
+            System.err.println(e.getMessage());
+            return;
+        }
+        new BatchConverter(charsInRow, charset, outputType, outputDir, threads, gzip).convert(files);
+    }
+
+    /**
+     * Converts all the files and prints a summary of the throughput
+     * @param files the image files
+     * @return the number of files that were converted successfully
+     */
+    public int convert(List<Path> files) {
+        ExecutorService ioExecutor = ThreadPools.newIoExecutor("batch-io");
+        ExecutorService cpuExecutor = ThreadPools.newCpuExecutor("batch-render", this.threads);
+        Semaphore inFlight = new Semaphore(this.threads * IN_FLIGHT_PER_THREAD);
+        AtomicInteger converted = new AtomicInteger();
+        AtomicLong bytes = new AtomicLong();
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        Map<Path, Path> outputs = new HashMap<>(); // the file that claimed every html output
+
+        long start = System.nanoTime();
+        try {
+            for (Path file : files) {
+                if (this.outputType.equals(HTML_OUTPUT)) {
+                    Path output = outputPath(file);
+                    Path claimed = outputs.putIfAbsent(output, file);
+                    if (claimed != null) { // converting it would overwrite the page of an earlier file
+                        System.err.printf(FAILED_MSG, file, String.format(SAME_OUTPUT_MSG, output, claimed));
+                        continue;
+                    }
+                }
+                inFlight.acquireUninterruptibly();
+                futures.add(CompletableFuture
+                        .supplyAsync(() -> decode(file), ioExecutor)
+                        .thenAcceptAsync(img -> {
+                            render(file, img);
+                            converted.incrementAndGet();
+                            bytes.addAndGet(file.toFile().length());
+                        }, cpuExecutor)
+                        .whenComplete((ignored, error) -> {
+                            inFlight.release();
+                            if (error != null) {
+                                Throwable cause = error.getCause() != null ? error.getCause() : error;
+                                System.err.printf(FAILED_MSG, file, cause.getMessage());
+                            }
+                        }));
+            }
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0]))
+                    .exceptionally(error -> null).join();
+        } finally {
+            ioExecutor.shutdown();
+            cpuExecutor.shutdown();
+        }
+
+        double seconds = Math.max(System.nanoTime() - start, 1) / NANOS_PER_SECOND;
+        System.out.printf(SUMMARY_MSG, converted.get(), files.size(), seconds,
+                converted.get() / seconds, bytes.get() / BYTES_PER_MB / seconds);
+        return converted.get();
+    }
+
+    /**
+     * Decodes a file, subsampled to the resolution of the conversion
+     * @param file the image file
+     * @return the image
+     */
+    private Image decode(Path file) {
+        try {
+            return Image.load(file.toString(), this.charsInRow);
+        } catch (IOException e) {
+            throw new RuntimeException(e.getMessage() == null ? e.toString() : e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Renders an image and writes it to the output, a page that cannot be written fails the file
+     * @param file the file of the image
+     * @param img the image
+     */
+    private void render(Path file, Image img) {
+        int imgCharsInRow = Math.min(this.charsInRow, Math.max(1, img.getWidth() / MIN_PIXELS_PER_CHAR));
+        BrightnessImgCharMatcher matcher = new BrightnessImgCharMatcher(img, DEFAULT_FONT);
+        char[][] chars = matcher.chooseChars(imgCharsInRow, this.charset);
+
+        if (this.outputType.equals(CONSOLE_OUTPUT)) {
+            synchronized (this.consoleLock) {
+                new ConsoleAsciiOutput().output(chars);
+            }
+            return;
+        }
+        HtmlAsciiOutput output = new HtmlAsciiOutput(outputPath(file).toString(), DEFAULT_FONT);
+        try {
+            output.write(chars, null);
+        } catch (IOException e) {
+            throw new RuntimeException(e.getMessage() == null ? e.toString() : e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Method that names the html page of a file in the output directory. The name keeps the extension of
+     * the file, so x.png and x.jpg get different pages.
+     * @param file the image file
+     * @return the path of the page
+     */
+    private Path outputPath(Path file) {
+        String name = file.getFileName() + HTML_SUFFIX + (this.gzip ? GZIP_SUFFIX : "");
+        return this.outputDir.resolve(name).toAbsolutePath().normalize();
+    }
+
+    /**
+     * Expands the inputs of the command line to files. A directory stands for the files in it and a
+     * path with glob characters stands for the files that match it.
+     * @param inputs paths, directories or globs
+     * @return the files, without duplicates
+     * @throws IOException if a directory cannot be listed
+     */
+    static List<Path> expand(List<String> inputs) throws IOException {
+        Set<Path> files = new LinkedHashSet<>();
+        for (String input : inputs) {
+            int firstGlobChar = firstGlobChar(input);
+            if (firstGlobChar < 0) {
+                Path path = Paths.get(input);
+                if (Files.isDirectory(path)) {
+                    try (DirectoryStream<Path> children = Files.newDirectoryStream(path)) {
+                        children.forEach(child -> {
+                            if (Files.isRegularFile(child)) {
+                                files.add(child);
+                            }
+                        });
+                    }
+                } else {
+                    files.add(path); // a missing file is reported as a failure of that file
+                }
+                continue;
+            }
+
+            int lastSeparator = input.lastIndexOf('/', firstGlobChar);
+            Path base = Paths.get(lastSeparator < 0 ? "." : input.substring(0, lastSeparator + 1));
+            String pattern = lastSeparator < 0 ? "./" + input : input;
+            PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + pattern);
+            try (Stream<Path> walk = Files.walk(base)) {
+                walk.filter(Files::isRegularFile)
+                        .filter(path -> matcher.matches(path))
+                        .sorted()
+                        .forEach(files::add);
+            }
+        }
+        return new ArrayList<>(files);
+    }
+
+    /**
+     * Function that finds the first glob character of a path
+     * @param input the path
+     * @return the index of the first glob character, or -1 if there is none
+     */
+    private static int firstGlobChar(String input) {
+        for (int i = 0; i < input.length(); i++) {
+            if (GLOB_CHARS.indexOf(input.charAt(i)) >= 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Parses a comma separated list of chars, ranges (a-z), "space" and "all", like the add command of
+     * the shell
+     * @param chars the description of the chars
+     * @return the chars, or an empty array if the description is illegal
+     */
+    static Character[] parseCharset(String chars) {
+        Set<Character> charset = new LinkedHashSet<>();
+        for (String part : chars.split(CHARS_SEPARATOR)) {
+            if (part.equals(ALL_CHARS)) {
+                addRange(charset, (char) FIRST_CHAR, (char) LAST_CHAR);
+            } else if (part.equals(SPACE_CHARS)) {
+                charset.add(' ');
+            } else if (part.length() == 1) {
+                charset.add(part.charAt(0));
+            } else if (part.length() == 3 && part.charAt(1) == RANGE_CHAR) {
+                addRange(charset, part.charAt(0), part.charAt(2));
+            } else {
+                return new Character[0];
+            }
+        }
+        return charset.toArray(new Character[0]);
+    }
+
+    /**
+     * Adds all the chars between two chars to a set
+     * @param charset the set
+     * @param c1 first character
+     * @param c2 second character
+     */
+    private static void addRange(Set<Character> charset, char c1, char c2) {
+        for (char c = (char) Math.min(c1, c2); c <= Math.max(c1, c2); c++) {
+            charset.add(c);
+        }
+    }
+}
@@ -11,12 +11,28 @@ import java.util.logging.Logger;
  * The class that is the driver of the program.
  */
 public class Driver {
+    private static final String BATCH_FLAG = "--batch";
+    private static final String ANIMATE_FLAG = "--animate";
+    private static final String SERVE_FLAG = "--serve";
+
     /**
      * The main method of the program.
      * @param args argument from comand line
      * @throws Exception exception of unavailable parameters
      */
     public static void main(String[] args) throws Exception {
+        if (args.length > 0 && args[0].equals(BATCH_FLAG)) {
+            BatchConverter.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        if (args.length > 0 && args[0].equals(ANIMATE_FLAG)) {
+            AnimationConverter.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        if (args.length > 0 && args[0].equals(SERVE_FLAG)) {
+            RenderServer.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
         if (args.length != 1) {
             System.err.println("USAGE: java asciiArt ");
             return;
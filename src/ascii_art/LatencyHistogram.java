@@ -0,0 +1,81 @@
+package ascii_art;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A package-private, lock free histogram of latencies. Every bucket holds the latencies up to the next
+ * power of two microseconds, so a percentile is reported as the upper bound of its bucket.
+ */
+class LatencyHistogram {
+    private static final int BUCKETS = 40; // up to 2^39 microseconds, about 6 days
+    private static final long NANOS_PER_MICRO = 1000;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Adds a latency to the histogram
+     * @param nanos the latency in nanoseconds
+     */
+    void record(long nanos) {
+        long micros = Math.max(nanos / NANOS_PER_MICRO, 1);
+        int bucket = Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros - 1));
+        this.counts.incrementAndGet(bucket);
+        this.count.increment();
+        this.totalNanos.add(nanos);
+        this.maxNanos.accumulate(nanos);
+    }
+
+    /**
+     * Getter for the number of recorded latencies
+     * @return the number of latencies
+     */
+    long count() {
+        return this.count.sum();
+    }
+
+    /**
+     * Getter for the mean latency
+     * @return the mean latency in milliseconds, 0 if nothing was recorded
+     */
+    double meanMillis() {
+        long count = count();
+        return count == 0 ? 0 : this.totalNanos.sum() / 1e6 / count;
+    }
+
+    /**
+     * Getter for the maximal latency
+     * @return the maximal latency in milliseconds
+     */
+    double maxMillis() {
+        return this.maxNanos.get() / 1e6;
+    }
+
+    /**
+     * Method that finds an upper bound of a percentile of the latencies
+     * @param percentile the percentile, between 0 and 100
+     * @return the upper bound of the bucket of the percentile (at most the maximal latency) in
+     * milliseconds, 0 if nothing was recorded
+     */
+    double percentileMillis(double percentile) {
+        long[] snapshot = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = this.counts.get(i);
+            total += snapshot[i];
+        }
+        long rank = (long) Math.ceil(total * percentile / 100);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank && seen > 0) {
+                return Math.min((1L << i) * NANOS_PER_MICRO / 1e6, maxMillis());
+            }
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,69 @@
+package ascii_art;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A package-private cache of rendered pages, bounded by the total size of the pages. When a new page
+ * does not fit, the least recently used pages are evicted.
+ */
+class RenderCache {
+    private final long maxBytes;
+    private final LinkedHashMap<String, byte[]> pages;
+    private long bytes;
+
+    /**
+     * The constructor of the cache
+     * @param maxBytes the maximal total size of the cached pages, 0 disables the cache
+     */
+    RenderCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+        this.pages = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * Returns a cached page and marks it as the most recently used
+     * @param key the key of the page
+     * @return the page, or null if it is not cached
+     */
+    synchronized byte[] get(String key) {
+        return this.pages.get(key);
+    }
+
+    /**
+     * Adds a page to the cache, evicting the least recently used pages until it fits.
+     * A page that is bigger than the whole cache is not cached.
+     * @param key the key of the page
+     * @param page the page
+     */
+    synchronized void put(String key, byte[] page) {
+        if (page.length > this.maxBytes) {
+            return;
+        }
+        byte[] old = this.pages.put(key, page);
+        this.bytes += page.length - (old == null ? 0 : old.length);
+        Iterator<Map.Entry<String, byte[]>> eldest = this.pages.entrySet().iterator();
+        while (this.bytes > this.maxBytes) {
+            Map.Entry<String, byte[]> entry = eldest.next();
+            this.bytes -= entry.getValue().length;
+            eldest.remove();
+        }
+    }
+
+    /**
+     * Getter for the number of cached pages
+     * @return the number of pages
+     */
+    synchronized int size() {
+        return this.pages.size();
+    }
+
+    /**
+     * Getter for the total size of the cached pages
+     * @return the size in bytes
+     */
+    synchronized long bytes() {
+        return this.bytes;
+    }
+}
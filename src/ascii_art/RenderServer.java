@@ -0,0 +1,435 @@
+package ascii_art;
+
+import ascii_art.img_to_char.BrightnessImgCharMatcher;
+import ascii_output.ColoredAsciiOutput;
+import ascii_output.ConsoleAsciiOutput;
+import ascii_output.HtmlAsciiOutput;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import image.Image;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+/**
+ * The class that runs the converter as a long-lived HTTP service on localhost.
+ * POST /render?res=64&amp;chars=0-9&amp;out=html|text&amp;color=on|off with the bytes of an image file as
+ * the body returns the ascii art, for example:
+ *     curl --data-binary @board.jpeg "http://localhost:8080/render?res=128&amp;out=text"
+ * GET /metrics returns the counters of the service and the latency of the renders.
+ * The pages are cached by the hash of the image and the parameters. At most a fixed number of images
+ * are decoded and rendered at the same time, and a few times that number of bodies are buffered, so
+ * cached pages are answered while the renders are busy.
+ */
+public class RenderServer {
+    /** options */
+    private static final String PORT_OPTION = "-port";
+    private static final String THREADS_OPTION = "-threads";
+    private static final String CACHE_OPTION = "-cache";
+    /** parameters of the render endpoint */
+    private static final String RENDER_PATH = "/render";
+    private static final String METRICS_PATH = "/metrics";
+    private static final String RES_PARAM = "res";
+    private static final String CHARS_PARAM = "chars";
+    private static final String OUT_PARAM = "out";
+    private static final String COLOR_PARAM = "color";
+    private static final String HTML_OUTPUT = "html";
+    private static final String TEXT_OUTPUT = "text";
+    private static final String COLOR_ON = "on";
+    private static final String COLOR_OFF = "off";
+    /** messages */
+    private static final String USAGE_MSG =
+            "USAGE: java ascii_art.Driver --serve [-port port] [-threads n] [-cache megabytes]";
+    private static final String LISTENING_MSG = "Listening on http://localhost:%d%s%n";
+    private static final String METRICS_MSG =
+            "requests %d%n" +
+            "cache_hits %d%n" +
+            "cache_misses %d%n" +
+            "cache_pages %d%n" +
+            "cache_bytes %d%n" +
+            "rejected %d%n" +
+            "bad_requests %d%n" +
+            "in_flight %d%n" +
+            "render_latency_mean_ms %.3f%n" +
+            "render_latency_p50_ms %.3f%n" +
+            "render_latency_p90_ms %.3f%n" +
+            "render_latency_p99_ms %.3f%n" +
+            "render_latency_max_ms %.3f%n";
+    /** defaults variables */
+    private static final String DEFAULT_FONT = "Courier New";
+    private static final String DEFAULT_CHARS = "0-9";
+    private static final int DEFAULT_PORT = 8080;
+    private static final int DEFAULT_CHARS_IN_ROW = 64;
+    private static final int DEFAULT_CACHE_MB = 64;
+    private static final int MAX_CHARS_IN_ROW = 4096;
+    private static final int MIN_PIXELS_PER_CHAR = 2;
+    private static final int MAX_IMAGE_BYTES = 32 * 1024 * 1024;
+    private static final long QUEUE_TIMEOUT_MILLIS = 10_000;
+    private static final int UPLOADS_PER_THREAD = 4;
+    private static final int BYTES_PER_MB = 1024 * 1024;
+    private static final String TEXT_TYPE = "text/plain; charset=utf-8";
+    private static final String HTML_TYPE = "text/html; charset=utf-8";
+    private static final int OK = 200;
+    private static final int BAD_REQUEST = 400;
+    private static final int METHOD_NOT_ALLOWED = 405;
+    private static final int PAYLOAD_TOO_LARGE = 413;
+    private static final int INTERNAL_ERROR = 500;
+    private static final int UNAVAILABLE = 503;
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final Semaphore renderPermits;
+    private final Semaphore uploadPermits;
+    private final int threads;
+    private final RenderCache cache;
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder cacheHits = new LongAdder();
+    private final LongAdder cacheMisses = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder badRequests = new LongAdder();
+
+    /**
+     * The constructor of the service, it listens only on the loopback address
+     * @param port the port to listen on, 0 for any free port
+     * @param threads the maximal number of images that are rendered at the same time
+     * @param cacheBytes the maximal total size of the cached pages
+     * @throws IOException if the port cannot be bound
+     */
+    public RenderServer(int port, int threads, long cacheBytes) throws IOException {
+        this.threads = threads;
+        this.renderPermits = new Semaphore(threads);
+        this.uploadPermits = new Semaphore(threads * UPLOADS_PER_THREAD);
+        this.cache = new RenderCache(cacheBytes);
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        this.executor = ThreadPools.newIoExecutor("render-server");
+        this.server.setExecutor(this.executor);
+        this.server.createContext(RENDER_PATH, this::handleRender);
+        this.server.createContext(METRICS_PATH, this::handleMetrics);
+    }
+
+    /**
+     * Parses the command line of the service and runs it until the process is stopped
+     * @param args the arguments after --serve
+     */
+    public static void main(String[] args) {
+        int port = DEFAULT_PORT;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int cacheMb = DEFAULT_CACHE_MB;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case PORT_OPTION: port = Integer.parseInt(args[++i]); break;
+                    case THREADS_OPTION: threads = Integer.parseInt(args[++i]); break;
+                    case CACHE_OPTION: cacheMb = Integer.parseInt(args[++i]); break;
+                    default: throw new IllegalArgumentException(args[i]);
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException | IllegalArgumentException e) {
+            threads = 0;
+        }
+        if (port < 0 || threads < 1 || cacheMb < 0) {
+            System.err.println(USAGE_MSG);
+            return;
+        }
+
+        try {
+            RenderServer renderServer = new RenderServer(port, threads, (long) cacheMb * BYTES_PER_MB);
+            renderServer.start();
+            System.out.printf(LISTENING_MSG, renderServer.getPort(), RENDER_PATH);
+        } catch (IOException e) {
+            System.err.println(e.getMessage());
+        }
+    }
+
+    /**
+     * Starts serving requests in the background
+     */
+    public void start() {
+        this.server.start();
+    }
+
+    /**
+     * Stops serving requests, waiting up to a second for the requests in progress
+     */
+    public void stop() {
+        this.server.stop(1);
+        this.executor.shutdown();
+    }
+
+    /**
+     * Getter for the port the service listens on
+     * @return the port
+     */
+    public int getPort() {
+        return this.server.getAddress().getPort();
+    }
+
+    /**
+     * Handles a request to render an image
+     * @param exchange the request and its response
+     * @throws IOException if the response cannot be sent
+     */
+    private void handleRender(HttpExchange exchange) throws IOException {
+        this.requests.increment();
+        try {
+            if (!exchange.getRequestMethod().equals("POST")) {
+                respond(exchange, METHOD_NOT_ALLOWED, TEXT_TYPE, "Use POST with the image as the body\n");
+                return;
+            }
+            Map<String, String> params = queryParams(exchange.getRequestURI().getRawQuery());
+            int charsInRow;
+            try {
+                charsInRow = Integer.parseInt(params.getOrDefault(RES_PARAM, "" + DEFAULT_CHARS_IN_ROW));
+            } catch (NumberFormatException e) {
+                charsInRow = 0;
+            }
+            String chars = params.getOrDefault(CHARS_PARAM, DEFAULT_CHARS);
+            Character[] charset = BatchConverter.parseCharset(chars);
+            String output = params.getOrDefault(OUT_PARAM, HTML_OUTPUT);
+            String color = params.getOrDefault(COLOR_PARAM, COLOR_OFF);
+            if (charsInRow < 1 || charsInRow > MAX_CHARS_IN_ROW || charset.length == 0 ||
+                    !(output.equals(HTML_OUTPUT) || output.equals(TEXT_OUTPUT)) ||
+                    !(color.equals(COLOR_ON) || color.equals(COLOR_OFF))) {
+                this.badRequests.increment();
+                respond(exchange, BAD_REQUEST, TEXT_TYPE, "Illegal parameters\n");
+                return;
+            }
+
+            // bounds the bodies that are buffered at the same time, the renders have their own permits
+            if (!this.uploadPermits.tryAcquire(QUEUE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                this.rejected.increment();
+                respond(exchange, UNAVAILABLE, TEXT_TYPE, "Too many uploads in progress\n");
+                return;
+            }
+            try {
+                renderBody(exchange, charsInRow, charset, output, color);
+            } finally {
+                this.uploadPermits.release();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            if (exchange.getResponseCode() == -1) { // nothing was sent yet
+                respond(exchange, UNAVAILABLE, TEXT_TYPE, "The service is stopping\n");
+            }
+        } catch (RuntimeException e) {
+            Logger.getGlobal().severe("Failed to render: " + e);
+            if (exchange.getResponseCode() == -1) { // nothing was sent yet
+                respond(exchange, INTERNAL_ERROR, TEXT_TYPE, "Failed to render the image\n");
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Reads the image of a render request and responds with its page, from the cache when the same
+     * image was already rendered with the same parameters. The caller holds an upload permit, a render
+     * permit is taken only when the page is not cached.
+     * @param exchange the request and its response
+     * @param charsInRow the number of chars in a row
+     * @param charset the chars to render with
+     * @param output html or text
+     * @param color on or off
+     * @throws IOException if the request cannot be read or the response cannot be sent
+     * @throws InterruptedException if the thread is interrupted while it waits for a render permit
+     */
+    private void renderBody(HttpExchange exchange, int charsInRow, Character[] charset, String output,
+                            String color) throws IOException, InterruptedException {
+        byte[] data = readBody(exchange.getRequestBody());
+        if (data == null) {
+            respond(exchange, PAYLOAD_TOO_LARGE, TEXT_TYPE, "The image is too large\n");
+            return;
+        }
+        String type = output.equals(HTML_OUTPUT) ? HTML_TYPE : TEXT_TYPE;
+        String key = sha256(data) + "|" + charsInRow + "|" + charsetKey(charset) + "|" + output + "|" +
+                color;
+        byte[] page = this.cache.get(key);
+        if (page != null) {
+            this.cacheHits.increment();
+            respond(exchange, OK, type, page);
+            return;
+        }
+        this.cacheMisses.increment();
+
+        if (!this.renderPermits.tryAcquire(QUEUE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+            this.rejected.increment();
+            respond(exchange, UNAVAILABLE, TEXT_TYPE, "Too many renders in progress\n");
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            page = render(data, charsInRow, charset, output.equals(HTML_OUTPUT), color.equals(COLOR_ON));
+        } catch (IOException e) {
+            this.badRequests.increment();
+            respond(exchange, BAD_REQUEST, TEXT_TYPE, "Cannot decode the image\n");
+            return;
+        } finally {
+            this.renderPermits.release();
+        }
+        this.latency.record(System.nanoTime() - start);
+        this.cache.put(key, page);
+        respond(exchange, OK, type, page);
+    }
+
+    /**
+     * Function that writes a set of chars in one form for the cache key, the same set written in another
+     * order or with duplicates has the same key
+     * @param charset the chars
+     * @return the distinct chars, sorted
+     */
+    private static String charsetKey(Character[] charset) {
+        BitSet codes = new BitSet();
+        for (Character character : charset) {
+            codes.set(character);
+        }
+        StringBuilder key = new StringBuilder(codes.cardinality());
+        for (int c = codes.nextSetBit(0); c >= 0; c = codes.nextSetBit(c + 1)) {
+            key.append((char) c);
+        }
+        return key.toString();
+    }
+
+    /**
+     * Decodes an image and renders it to a page
+     * @param data the bytes of the image file
+     * @param charsInRow the number of chars in a row
+     * @param charset the chars to render with
+     * @param html whether to render an html page or plain text
+     * @param colored whether to color every char with the average color of its sub image
+     * @return the page
+     * @throws IOException if the image cannot be decoded
+     */
+    private static byte[] render(byte[] data, int charsInRow, Character[] charset, boolean html,
+                                 boolean colored) throws IOException {
+        Image img = Image.load(data, charsInRow);
+        int imgCharsInRow = Math.min(charsInRow, Math.max(1, img.getWidth() / MIN_PIXELS_PER_CHAR));
+        BrightnessImgCharMatcher matcher = new BrightnessImgCharMatcher(img, DEFAULT_FONT);
+
+        ByteArrayOutputStream page = new ByteArrayOutputStream();
+        ColoredAsciiOutput output = html ? new HtmlAsciiOutput(page, DEFAULT_FONT, false) :
+                new ConsoleAsciiOutput(page, StandardCharsets.UTF_8);
+        if (colored) {
+            int[][] colors = new int[matcher.cellRows(imgCharsInRow)][imgCharsInRow];
+            float[][] brightness = matcher.cellBrightness(imgCharsInRow, colors);
+            output.output(matcher.chooseChars(brightness, charset), colors);
+        } else {
+            output.output(matcher.chooseChars(imgCharsInRow, charset));
+        }
+        return page.toByteArray();
+    }
+
+    /**
+     * Handles a request for the metrics of the service
+     * @param exchange the request and its response
+     * @throws IOException if the response cannot be sent
+     */
+    private void handleMetrics(HttpExchange exchange) throws IOException {
+        try {
+            String metrics = String.format(METRICS_MSG, this.requests.sum(), this.cacheHits.sum(),
+                    this.cacheMisses.sum(), this.cache.size(), this.cache.bytes(), this.rejected.sum(),
+                    this.badRequests.sum(), this.threads - this.renderPermits.availablePermits(),
+                    this.latency.meanMillis(), this.latency.percentileMillis(50),
+                    this.latency.percentileMillis(90), this.latency.percentileMillis(99),
+                    this.latency.maxMillis());
+            respond(exchange, OK, TEXT_TYPE, metrics);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Reads the body of a request
+     * @param body the stream of the body
+     * @return the bytes of the body, or null if it is larger than MAX_IMAGE_BYTES
+     * @throws IOException if the body cannot be read
+     */
+    private static byte[] readBody(InputStream body) throws IOException {
+        byte[] data = body.readNBytes(MAX_IMAGE_BYTES + 1);
+        return data.length > MAX_IMAGE_BYTES ? null : data;
+    }
+
+    /**
+     * Function that parses the query of a url
+     * @param rawQuery the encoded query, may be null
+     * @return the parameters of the query
+     */
+    private static Map<String, String> queryParams(String rawQuery) {
+        Map<String, String> params = new HashMap<>();
+        if (rawQuery == null) {
+            return params;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int equals = pair.indexOf('=');
+            if (equals > 0) {
+                params.put(URLDecoder.decode(pair.substring(0, equals), StandardCharsets.UTF_8),
+                        URLDecoder.decode(pair.substring(equals + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return params;
+    }
+
+    /**
+     * Function that computes the SHA-256 hash of the bytes of an image
+     * @param data the bytes
+     * @return the hash as hex digits
+     */
+    private static String sha256(byte[] data) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(data);
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e); // every JVM has SHA-256
+        }
+    }
+
+    /**
+     * Sends a text response
+     * @param exchange the request and its response
+     * @param status the status code
+     * @param type the content type
+     * @param body the body of the response
+     * @throws IOException if the response cannot be sent
+     */
+    private static void respond(HttpExchange exchange, int status, String type, String body)
+            throws IOException {
+        respond(exchange, status, type, body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Sends a response
+     * @param exchange the request and its response
+     * @param status the status code
+     * @param type the content type
+     * @param body the body of the response
+     * @throws IOException if the response cannot be sent
+     */
+    private static void respond(HttpExchange exchange, int status, String type, byte[] body)
+            throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", type);
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+}
@@ -1,16 +1,21 @@
 package ascii_art;
 
 import ascii_art.img_to_char.BrightnessImgCharMatcher;
-import ascii_output.AsciiOutput;
+import ascii_art.img_to_char.Dithering;
+import ascii_art.img_to_char.ImgCharMatcher;
+import ascii_art.img_to_char.ShapeImgCharMatcher;
+import ascii_output.ColoredAsciiOutput;
 import ascii_output.ConsoleAsciiOutput;
 import ascii_output.HtmlAsciiOutput;
 import image.Image;
+import stats.Stats;
 
-import java.util.HashSet;
-import java.util.List;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Scanner;
-import java.util.Set;
 import java.util.function.BiConsumer;
+import java.util.function.ObjIntConsumer;
 import java.util.function.Supplier;
 
 /**
@@ -30,17 +35,41 @@ public class Shell {
     private static final String RESOLUTION_COMMAND = "res";
     private static final String RES_UP_COMMAND = "up";
     private static final String CONSOLE_COMMAND = "console";
+    private static final String PARALLEL_COMMAND = "parallel";
+    private static final String COLOR_COMMAND = "color";
+    private static final String STATS_COMMAND = "stats";
+    private static final String RESET_COMMAND = "reset";
+    private static final String MATCHER_COMMAND = "matcher";
+    private static final String BRIGHTNESS_COMMAND = "brightness";
+    private static final String SHAPE_COMMAND = "shape";
+    private static final String DITHER_COMMAND = "dither";
+    private static final String FLOYD_STEINBERG_COMMAND = "floyd";
+    private static final String ORDERED_COMMAND = "ordered";
+    private static final String ASPECT_COMMAND = "aspect";
+    private static final char GRID_SEPARATOR = 'x';
+    private static final String ON_COMMAND = "on";
+    private static final String OFF_COMMAND = "off";
     /** messages */
     private static final String ARROWS_STRING = ">>>";
     private static final String ADD_ERROR_MSG = "Did not add due incorrect format";
     private static final String REMOVE_ERR_MSG = "Did not remove due to incorrect format";
     private static final String RES_ERR_MSG = "Did not change due to exceeding boundaries";
     private static final String RES_SUCCSES_MSG = "Width set to ";
+    private static final String ROWS_SUCCSES_MSG = "Rows set to ";
+    private static final String ASPECT_ERR_MSG = "Did not change due to incorrect char aspect";
+    private static final String ASPECT_SUCCSES_MSG = "Char aspect set to ";
     private static final String INVALID_ERR_MSG = "Did not executed due to incorrect command";
+    private static final String PARALLEL_ERR_MSG = "Did not change due to incorrect number of threads";
+    private static final String PARALLEL_SUCCSES_MSG = "Parallelism set to ";
+    private static final String COLOR_SUCCSES_MSG = "Color set to ";
+    private static final String MATCHER_SUCCSES_MSG = "Matcher set to ";
+    private static final String DITHER_SUCCSES_MSG = "Dithering set to ";
+    private static final String RENDER_ERR_MSG = "Did not render due to an empty set of chars";
     /** defaults variables */
     private static final String DEFAULT_FONT = "Courier New";
     private static final char SPACE_CHAR = ' ';
-    private static final Character[] INIT_CHARACTERS = {'0','1','2','3','4','5','6','7','8','9'};
+    private static final char FIRST_INIT_CHAR = '0';
+    private static final char LAST_INIT_CHAR = '9';
     private static final int FIRST_CHAR = 32;
     private static final int LAST_CHAR = 126;
     private static final int MIN_PIXELS_PER_CHAR = 2;
@@ -52,16 +81,39 @@ public class Shell {
     private static final int LEGAL_RES_COMMAND_SIZE = 2;
     private static final String CHARS_SEPERATOR = " ";
     private static final int LEGAL_ARR_REMOVE_COMMAND_SIZE = 2;
+    private static final int LEGAL_PARALLEL_COMMAND_SIZE = 2;
+    private static final int LEGAL_COLOR_COMMAND_SIZE = 2;
+    private static final int LEGAL_STATS_RESET_COMMAND_SIZE = 2;
+    private static final int LEGAL_MATCHER_COMMAND_SIZE = 2;
+    private static final int LEGAL_DITHER_COMMAND_SIZE = 2;
+    private static final int LEGAL_ASPECT_COMMAND_SIZE = 2;
+    private static final double DEFAULT_CHAR_ASPECT = 1; // square chars, as in the html output
+    private static final double MAX_CHAR_ASPECT = 4;
+    private static final int KEPT_GRIDS = 4; // the most recently rendered resolutions whose grids are kept
 
     private final Image img;
     private final int minCharsInRow;
     private final int maxCharsInRow;
-    private AsciiOutput renderer;
+    private ColoredAsciiOutput renderer;
+    private boolean colored;
     private int rendererType; // 0 means HTML 1 means console
+    private final int maxRows;
     private int charsInRow;
+    private int rows; // 0 means the rows follow the proportions of the image and the char aspect
+    private double charAspect;
     private final BrightnessImgCharMatcher brightnessImgCharMatcher;
+    private ShapeImgCharMatcher shapeImgCharMatcher; // created on the first shape render
+    private boolean shapeMatching;
     private char [][] curCharImg;
-    private final Set<Character> charSet;
+    private int[][] curColors; // the colors of the resolution of curCharImg, null until a colored render
+    private final BitSet charSet; // the char codes of the chars of the next render
+    private final Map<Long, float[][]> brightnessByGrid; // the brightness grids of the recent resolutions
+    private final Map<Long, int[][]> colorsByGrid; // the color grids of the recent colored resolutions
+    private final BitSet curCharImgCharSet; // the chars that curCharImg was rendered with
+    private int curCharImgCharsInRow;
+    private int curCharImgRows;
+    private boolean curCharImgShapeMatching; // the matcher that curCharImg was rendered with
+    private Dithering curCharImgDithering;
 
     /**
      * The constructor of the shell
@@ -71,11 +123,17 @@ public class Shell {
     {
         this.img = img;
         this.brightnessImgCharMatcher = new BrightnessImgCharMatcher(this.img, DEFAULT_FONT);
-        this.charSet = new HashSet<>(List.of(INIT_CHARACTERS));
+        this.brightnessImgCharMatcher.setParallelism(Runtime.getRuntime().availableProcessors());
+        this.charSet = charactersSetCreator(FIRST_INIT_CHAR, LAST_INIT_CHAR);
+        this.brightnessByGrid = recentGrids();
+        this.colorsByGrid = recentGrids();
+        this.curCharImgCharSet = new BitSet();
 
         this.minCharsInRow = Math.max(1, img.getWidth()/ img.getHeight());
         this.maxCharsInRow = img.getWidth()/ MIN_PIXELS_PER_CHAR;
         this.charsInRow = Math.max(Math.min(INITIAL_CHARS_IN_ROW, this.maxCharsInRow), this.minCharsInRow);
+        this.maxRows = img.getHeight()/ MIN_PIXELS_PER_CHAR;
+        this.charAspect = DEFAULT_CHAR_ASPECT;
 
         this.renderer = new HtmlAsciiOutput(OUTPUT_NAMEFILE,DEFAULT_FONT);
         this.rendererType = 0;
@@ -124,15 +182,13 @@ public class Shell {
             }
             case ADD_COMMAND:
             {
-                addRemoveLogic(commandArr,Set::add,
-                        (set, chars) -> set.addAll(List.of(chars)),
+                addRemoveLogic(commandArr, BitSet::set, BitSet::or,
                         () -> ADD_ERROR_MSG);
                 break;
             }
             case REMOVE_COMMAND:
             {
-                addRemoveLogic(commandArr, Set::remove,
-                        (set, chars) -> List.of(chars).forEach(set::remove),
+                addRemoveLogic(commandArr, BitSet::clear, BitSet::andNot,
                         ()-> REMOVE_ERR_MSG);
                 break;
             }
@@ -151,6 +207,36 @@ public class Shell {
                 consoleLogic();
                 break;
             }
+            case PARALLEL_COMMAND:
+            {
+                parallelLogic(commandArr);
+                break;
+            }
+            case COLOR_COMMAND:
+            {
+                colorLogic(commandArr);
+                break;
+            }
+            case STATS_COMMAND:
+            {
+                statsLogic(commandArr);
+                break;
+            }
+            case MATCHER_COMMAND:
+            {
+                matcherLogic(commandArr);
+                break;
+            }
+            case DITHER_COMMAND:
+            {
+                ditherLogic(commandArr);
+                break;
+            }
+            case ASPECT_COMMAND:
+            {
+                aspectLogic(commandArr);
+                break;
+            }
             default:
             {
                 invalidCommand();
@@ -172,17 +258,220 @@ public class Shell {
     }
 
     /**
-     * Method that deals with the render command it will create the ascii art
+     * Method that deals with the parallel command, it sets the number of threads that render the image
+     * @param commands the command of the user as a array of strings
+     */
+    private void parallelLogic(String[] commands)
+    {
+        if (commands.length != LEGAL_PARALLEL_COMMAND_SIZE)
+        {
+            invalidCommand();
+            return;
+        }
+
+        int threads;
+        try {
+            threads = Integer.parseInt(commands[1]);
+        } catch (NumberFormatException e) {
+            System.out.println(PARALLEL_ERR_MSG);
+            return;
+        }
+
+        if (threads < 1) {
+            System.out.println(PARALLEL_ERR_MSG);
+            return;
+        }
+        this.brightnessImgCharMatcher.setParallelism(threads);
+        if (this.shapeImgCharMatcher != null)
+        {
+            this.shapeImgCharMatcher.setParallelism(threads);
+        }
+        System.out.println(PARALLEL_SUCCSES_MSG + threads);
+    }
+
+    /**
+     * Method that deals with the color command, it turns the colored output on or off
+     * @param commands the command of the user as a array of strings
+     */
+    private void colorLogic(String[] commands)
+    {
+        if (commands.length != LEGAL_COLOR_COMMAND_SIZE ||
+                !(commands[1].equals(ON_COMMAND) || commands[1].equals(OFF_COMMAND)))
+        {
+            invalidCommand();
+            return;
+        }
+        this.colored = commands[1].equals(ON_COMMAND);
+        System.out.println(COLOR_SUCCSES_MSG + commands[1]);
+    }
+
+    /**
+     * Method that deals with the matcher command, it chooses if the chars are matched by the brightness
+     * or by the shape of the sub images
+     * @param commands the command of the user as a array of strings
+     */
+    private void matcherLogic(String[] commands)
+    {
+        if (commands.length != LEGAL_MATCHER_COMMAND_SIZE ||
+                !(commands[1].equals(BRIGHTNESS_COMMAND) || commands[1].equals(SHAPE_COMMAND)))
+        {
+            invalidCommand();
+            return;
+        }
+        this.shapeMatching = commands[1].equals(SHAPE_COMMAND);
+        System.out.println(MATCHER_SUCCSES_MSG + commands[1]);
+    }
+
+    /**
+     * Method that deals with the dither command, it chooses how the brightness matcher spreads the
+     * difference between a sub image and its char: off, floyd (Floyd-Steinberg) or ordered (Bayer)
+     * @param commands the command of the user as a array of strings
+     */
+    private void ditherLogic(String[] commands)
+    {
+        if (commands.length != LEGAL_DITHER_COMMAND_SIZE)
+        {
+            invalidCommand();
+            return;
+        }
+        switch (commands[1])
+        {
+            case OFF_COMMAND:
+                this.brightnessImgCharMatcher.setDithering(Dithering.NONE);
+                break;
+            case FLOYD_STEINBERG_COMMAND:
+                this.brightnessImgCharMatcher.setDithering(Dithering.FLOYD_STEINBERG);
+                break;
+            case ORDERED_COMMAND:
+                this.brightnessImgCharMatcher.setDithering(Dithering.ORDERED);
+                break;
+            default:
+                invalidCommand();
+                return;
+        }
+        System.out.println(DITHER_SUCCSES_MSG + commands[1]);
+    }
+
+    /**
+     * Method that deals with the stats command, it prints the time and the work of every stage of the
+     * conversion since the start of the shell, or resets them with "stats reset"
+     * @param commands the command of the user as a array of strings
+     */
+    private void statsLogic(String[] commands)
+    {
+        if (commands.length == 1)
+        {
+            System.out.print(Stats.report());
+        }
+        else if (commands.length == LEGAL_STATS_RESET_COMMAND_SIZE && commands[1].equals(RESET_COMMAND))
+        {
+            Stats.reset();
+        }
+        else
+        {
+            invalidCommand();
+        }
+    }
+
+    /**
+     * Method that deals with the render command it will create the ascii art, unless the set of chars is
+     * empty
      */
     private void rendererLogic()
     {
-        this.curCharImg = this.brightnessImgCharMatcher.chooseChars(this.charsInRow,
-                this.charSet.toArray(new Character[0]));
-        this.renderer.output(this.curCharImg);
+        if (this.charSet.isEmpty())
+        {
+            System.out.println(RENDER_ERR_MSG);
+            return;
+        }
+        int numRows = currentRows();
+        long grid = ((long) this.charsInRow << Integer.SIZE) | numRows;
+        boolean newGrid = this.curCharImg == null || this.curCharImgCharsInRow != this.charsInRow ||
+                this.curCharImgRows != numRows;
+        if (newGrid)
+        {
+            this.curColors = null;
+        }
+        if (this.colored && this.curColors == null)
+        {
+            this.curColors = this.colorsByGrid.get(grid);
+            if (this.curColors == null)
+            {
+                // one pass gives both grids, the brightness is the same as the one of a plain render
+                int[][] colors = new int[numRows][this.charsInRow];
+                this.brightnessByGrid.put(grid,
+                        this.brightnessImgCharMatcher.cellBrightness(this.charsInRow, numRows, colors));
+                this.colorsByGrid.put(grid, colors);
+                this.curColors = colors;
+            }
+        }
+        // the image never changes, so only a new resolution needs new brightnesses and only a new
+        // resolution, a new set of chars, a new matcher or a new dithering needs a new matching, which
+        // fills the array of the last matching when the resolution is the same
+        if (newGrid || !this.curCharImgCharSet.equals(this.charSet) ||
+                this.curCharImgShapeMatching != this.shapeMatching ||
+                this.curCharImgDithering != this.brightnessImgCharMatcher.getDithering())
+        {
+            if (this.shapeMatching)
+            {
+                this.curCharImg = shapeImgCharMatcher().chooseChars(this.charsInRow, numRows, this.charSet,
+                        this.curCharImg);
+            }
+            else
+            {
+                float[][] brightness = this.brightnessByGrid.computeIfAbsent(grid,
+                        key -> this.brightnessImgCharMatcher.cellBrightness(this.charsInRow, numRows));
+                this.curCharImg = this.brightnessImgCharMatcher.chooseChars(brightness, this.charSet,
+                        this.curCharImg);
+            }
+            this.curCharImgShapeMatching = this.shapeMatching;
+            this.curCharImgDithering = this.brightnessImgCharMatcher.getDithering();
+            this.curCharImgCharsInRow = this.charsInRow;
+            this.curCharImgRows = numRows;
+            this.curCharImgCharSet.clear();
+            this.curCharImgCharSet.or(this.charSet);
+        }
+        if (this.colored)
+        {
+            this.renderer.output(this.curCharImg, this.curColors);
+        }
+        else
+        {
+            this.renderer.output(this.curCharImg);
+        }
+    }
+
+    /**
+     * Method that returns the number of rows of the next render
+     * @return the rows that were set, or the rows that keep the proportions of the image
+     */
+    private int currentRows()
+    {
+        if (this.rows > 0)
+        {
+            return this.rows;
+        }
+        return Math.min(ImgCharMatcher.cellRows(this.img, this.charsInRow, this.charAspect), this.maxRows);
+    }
+
+    /**
+     * Method that returns the shape matcher of the image, creating it on the first call
+     * @return the shape matcher
+     */
+    private ShapeImgCharMatcher shapeImgCharMatcher()
+    {
+        if (this.shapeImgCharMatcher == null)
+        {
+            this.shapeImgCharMatcher = new ShapeImgCharMatcher(this.brightnessImgCharMatcher, DEFAULT_FONT);
+            this.shapeImgCharMatcher.setParallelism(this.brightnessImgCharMatcher.getParallelism());
+        }
+        return this.shapeImgCharMatcher;
     }
 
     /**
-     * Method that deals with the resolution command, it increases or decreases the resolution
+     * Method that deals with the resolution command, it increases or decreases the resolution, sets any
+     * number of chars in a row ("res 100"), or sets both the chars in a row and the rows ("res 100x40").
+     * Only the last form fixes the rows, the others let the rows follow the proportions of the image.
      * @param commands the command of the user as a array of strings
      */
     private void resolutionLogic(String[] commands)
@@ -201,6 +490,7 @@ public class Shell {
             }
             else {
                 this.charsInRow *= 2;
+                this.rows = 0;
                 System.out.println(RES_SUCCSES_MSG + this.charsInRow);
             }
         } else if (secondCommand.equals(RES_DOWN_COMMAND)) //contains down
@@ -210,14 +500,78 @@ public class Shell {
             }
             else {
                 this.charsInRow /= 2;
+                this.rows = 0;
                 System.out.println(RES_SUCCSES_MSG + this.charsInRow);
             }
         }
         else {
-           invalidCommand();
+            gridLogic(secondCommand);
         }
     }
 
+    /**
+     * Method that deals with the "res <chars in row>" and "res <chars in row>x<rows>" forms of the
+     * resolution command
+     * @param grid the second word of the command
+     */
+    private void gridLogic(String grid)
+    {
+        int separator = grid.indexOf(GRID_SEPARATOR);
+        int newCharsInRow;
+        int newRows = 0;
+        try {
+            newCharsInRow = Integer.parseInt(separator < 0 ? grid : grid.substring(0, separator));
+            if (separator >= 0) {
+                newRows = Integer.parseInt(grid.substring(separator + 1));
+            }
+        } catch (NumberFormatException e) {
+            invalidCommand();
+            return;
+        }
+
+        if (newCharsInRow < this.minCharsInRow || newCharsInRow > this.maxCharsInRow ||
+                (separator >= 0 && (newRows < 1 || newRows > this.maxRows))) {
+            System.out.println(RES_ERR_MSG);
+            return;
+        }
+        this.charsInRow = newCharsInRow;
+        this.rows = newRows;
+        System.out.println(RES_SUCCSES_MSG + this.charsInRow);
+        if (this.rows > 0) {
+            System.out.println(ROWS_SUCCSES_MSG + this.rows);
+        }
+    }
+
+    /**
+     * Method that deals with the aspect command, it sets how many times a displayed char is higher than
+     * it is wide (about 2 in a terminal), so the rows keep the proportions of the image
+     * @param commands the command of the user as a array of strings
+     */
+    private void aspectLogic(String[] commands)
+    {
+        if (commands.length != LEGAL_ASPECT_COMMAND_SIZE)
+        {
+            invalidCommand();
+            return;
+        }
+
+        double aspect;
+        try {
+            aspect = Double.parseDouble(commands[1]);
+        } catch (NumberFormatException e) {
+            System.out.println(ASPECT_ERR_MSG);
+            return;
+        }
+
+        if (!(aspect > 0 && aspect <= MAX_CHAR_ASPECT)) {
+            System.out.println(ASPECT_ERR_MSG);
+            return;
+        }
+        this.charAspect = aspect;
+        this.rows = 0;
+        System.out.println(ASPECT_SUCCSES_MSG + commands[1]);
+    }
+
     /**
      * Method that is called when the input is illegal. prints an error message
      */
@@ -238,9 +592,9 @@ public class Shell {
             return;
         }
 
-        for (char character : this.charSet)
+        for (int c = this.charSet.nextSetBit(0); c >= 0; c = this.charSet.nextSetBit(c + 1))
         {
-            System.out.print(character + CHARS_SEPERATOR);
+            System.out.print((char) c + CHARS_SEPERATOR);
         }
         System.out.println(""); // to make a new line
     }
@@ -250,12 +604,12 @@ public class Shell {
      * the set
      * @param commandArr the command from the user
      * @param actionForOne the function that deals with one character
-     * @param actionForMany the function that deals with an array of chars
+     * @param actionForMany the function that deals with a set of chars
      * @param errorMessage function that returns a string for the error, depends on if it's add or remove/
      */
     private void addRemoveLogic(String[] commandArr,
-                                BiConsumer<Set<Character>,Character> actionForOne,
-                                BiConsumer<Set<Character>,Character[]> actionForMany,
+                                ObjIntConsumer<BitSet> actionForOne,
+                                BiConsumer<BitSet,BitSet> actionForMany,
                                 Supplier<String> errorMessage)
     {
         if (commandArr.length != LEGAL_ARR_REMOVE_COMMAND_SIZE)
@@ -289,22 +643,37 @@ public class Shell {
     }
 
     /**
-     * Function that gets 2 chars and create an Array of chars with all chars between those two chars
+     * Function that creates a map of grids by resolution that keeps only the KEPT_GRIDS most recently
+     * used resolutions, so going back and forth between a few resolutions reuses their grids while the
+     * memory stays bounded however many resolutions are rendered
+     * @param <V> the type of the grids
+     * @return an empty map in access order
+     */
+    private static <V> Map<Long, V> recentGrids()
+    {
+        return new LinkedHashMap<>(KEPT_GRIDS + 1, 1, true)
+        {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, V> eldest)
+            {
+                return size() > KEPT_GRIDS;
+            }
+        };
+    }
+
+    /**
+     * Function that gets 2 chars and create a set of the char codes of all chars between those two chars
      * @param c1 first character
      * @param c2 second character
-     * @return an array of all those chars
+     * @return a set of all those chars
      */
-    private static Character[] charactersSetCreator(char c1, char c2)
+    private static BitSet charactersSetCreator(char c1, char c2)
     {
         char smallerChar = c1 <= c2 ? c1 : c2;
         char biggerChar = c1 >= c2 ? c1 : c2;
 
-        Character[] characters = new Character[biggerChar - smallerChar + 1];
-
-        for (int i = 0; i <= biggerChar-smallerChar; i++) {
-            characters[i] = (char)(smallerChar+i);
-        }
-
+        BitSet characters = new BitSet();
+        characters.set(smallerChar, biggerChar + 1);
         return characters;
     }
 
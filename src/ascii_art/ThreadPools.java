@@ -0,0 +1,52 @@
+package ascii_art;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A package-private factory of the thread pools of the application.
+ */
+class ThreadPools {
+    private static final String VIRTUAL_EXECUTOR_FACTORY = "newVirtualThreadPerTaskExecutor";
+
+    /**
+     * Creates an executor for tasks that mostly wait for I/O. On a JVM with virtual threads every task
+     * gets its own virtual thread, otherwise the tasks run on a cached pool of daemon platform threads.
+     * The caller is responsible for bounding the number of tasks in flight.
+     * @param name the prefix of the names of the platform threads
+     * @return the executor
+     */
+    static ExecutorService newIoExecutor(String name) {
+        try {
+            return (ExecutorService) Executors.class.getMethod(VIRTUAL_EXECUTOR_FACTORY).invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(daemonThreads(name));
+        }
+    }
+
+    /**
+     * Creates a fixed pool of platform threads for CPU bound tasks
+     * @param name the prefix of the names of the threads
+     * @param threads the number of threads
+     * @return the executor
+     */
+    static ExecutorService newCpuExecutor(String name, int threads) {
+        return Executors.newFixedThreadPool(threads, daemonThreads(name));
+    }
+
+    /**
+     * Creates a factory of numbered daemon threads
+     * @param name the prefix of the names of the threads
+     * @return the thread factory
+     */
+    private static ThreadFactory daemonThreads(String name) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -1,23 +1,50 @@
 package ascii_art.img_to_char;
 
 import image.Image;
-import java.awt.*;
-import java.util.HashMap;
-import java.util.Map;
+import stats.Stage;
+import stats.StageEvent;
+import stats.Stats;
+
+import java.util.Arrays;
+import java.util.BitSet;
 
 /**
  * The class that transfers the image to an ascii art.
  */
-public class BrightnessImgCharMatcher {
+public class BrightnessImgCharMatcher implements ImgCharMatcher {
     private static final int DEFAULT_PIXELS = 16; //The default in this program
-    private static final double RED_GREY_RATIO = 0.2126;
-    private static final double GREEN_GREY_RATIO = 0.7152;
-    private static final double BLUE_GREY_RATIO = 0.0722;
-    private static final int MAX_RGB_VAL = 255;
-    private final HashMap<Character, Float> charsBrightness;
-    private final Map<Character, Float> brightnessMapMatcher;
-    private final Image img;
+    /** the Floyd-Steinberg share of the error of every neighbour, out of 16 */
+    private static final float RIGHT_ERROR = 7 / 16f;
+    private static final float BELOW_LEFT_ERROR = 3 / 16f;
+    private static final float BELOW_ERROR = 5 / 16f;
+    private static final float BELOW_RIGHT_ERROR = 1 / 16f;
+    /** the 4x4 Bayer matrix of the ordered dithering, every value is the rank of its place out of 16 */
+    private static final int[][] BAYER_MATRIX = {
+            {0, 8, 2, 10}, {12, 4, 14, 6}, {3, 11, 1, 9}, {15, 7, 13, 5}};
+    private static final int BAYER_SIZE = BAYER_MATRIX.length;
+    private static final float BAYER_LEVELS = BAYER_SIZE * BAYER_SIZE;
+    /** the message of a match without any chars, the shape matcher rejects it the same way */
+    static final String EMPTY_CHARSET_MSG = "there are no chars to match";
+    private float[] charsBrightness; // indexed by char code, NaN for a char that was never seen
+    private Image img;
     private final String font;
+    private SummedAreaTable brightnessTable; // built on the first render, once per image
+    private final RowBands rowBands;
+    private BitSet currentCharset; // the char codes of the characters of quantizer
+    private BrightnessQuantizer quantizer; // rebuilt lazily after the characters change
+    private Dithering dithering;
+    private float[] rowErrors; // the Floyd-Steinberg errors of the current row, reused between matches
+    private float[] nextRowErrors;
+    private float[] rowBrightness; // the brightness of the row that the Floyd-Steinberg diffusion matches
+
+    /**
+     * The constructor of a matcher without an image, that only matches brightness grids with
+     * chooseChars(float[][], Character[]) and chooseChars(float[][], BitSet, char[][])
+     * @param font the font for the ascii art
+     */
+    public BrightnessImgCharMatcher(String font) {
+        this(null, font);
+    }
 
     /**
      * The constructor of this class
@@ -27,8 +54,59 @@ public class BrightnessImgCharMatcher {
     public BrightnessImgCharMatcher(Image img, String font) {
         this.img = img;
         this.font = font;
-        this.brightnessMapMatcher = new HashMap<>();
-        this.charsBrightness = new HashMap<>();
+        this.charsBrightness = new float[0];
+        this.rowBands = new RowBands();
+        this.dithering = Dithering.NONE;
+        this.currentCharset = new BitSet();
+    }
+
+    /**
+     * Replaces the image that is transformed, keeping the chars and their brightness. The summed-area
+     * table of the brightness is built again in the arrays of the last image, so the frames of a sequence
+     * of images of the same size allocate no table.
+     * @param img the image that will be transformed to an ascii art
+     */
+    public void setImage(Image img) {
+        this.img = img;
+        if (this.brightnessTable != null) {
+            this.brightnessTable.rebuild(img);
+        }
+    }
+
+    /**
+     * Sets the number of threads that render the row bands of the image. 1 renders sequentially.
+     * The chosen characters do not depend on this value.
+     * @param parallelism the number of threads to use, at least 1
+     * @throws IllegalArgumentException if parallelism is smaller than 1
+     */
+    @Override
+    public void setParallelism(int parallelism) {
+        this.rowBands.setParallelism(parallelism);
+    }
+
+    /**
+     * Getter for the number of threads that render the image
+     * @return the parallelism of the rendering
+     */
+    public int getParallelism() {
+        return this.rowBands.getParallelism();
+    }
+
+    /**
+     * Sets how the difference between the brightness of a sub image and the brightness of its char is
+     * spread to the other sub images
+     * @param dithering the dithering of the next matches, Dithering.NONE for the closest char
+     */
+    public void setDithering(Dithering dithering) {
+        this.dithering = dithering;
+    }
+
+    /**
+     * Getter for the dithering of the matches
+     * @return the dithering
+     */
+    public Dithering getDithering() {
+        return this.dithering;
     }
 
     /**
@@ -37,108 +115,426 @@ public class BrightnessImgCharMatcher {
      * @param charset the set of the chars
      * @return The image as an ascii art - 2D array
      */
+    @Override
     public char[][] chooseChars(int numCharsInRow, Character[] charset) {
-        if (charset.length != 0) {
-            this.brightnessMapMatcher.clear(); //Deletes the past characters
-            charSetAdder(charset);
+        int sizeSubs = this.img.getWidth()/numCharsInRow;
+        return chooseChars(numCharsInRow, cellRows(numCharsInRow), sizeSubs, sizeSubs, toBitSet(charset),
+                null);
+    }
+
+    /**
+     * The method that calculates the average brightness of every sub image, the result can be kept and
+     * matched again with chooseChars(float[][], Character[]) after the set of chars changes.
+     * @param numCharsInRow The number of chars in each row
+     * @return the brightness of every char of the ascii art, between 0 and 1
+     */
+    public float[][] cellBrightness(int numCharsInRow) {
+        int sizeSubs = this.img.getWidth()/numCharsInRow;
+        return cellBrightness(numCharsInRow, cellRows(numCharsInRow), sizeSubs, sizeSubs, null);
+    }
+
+    /**
+     * The method the gets a set of chars and create a 2D array of chars of any size (from the picture).
+     * @param numCharsInRow The number of chars in each row
+     * @param numRows The number of rows of chars
+     * @param charset the set of the chars
+     * @return The image as an ascii art - 2D array
+     */
+    @Override
+    public char[][] chooseChars(int numCharsInRow, int numRows, Character[] charset) {
+        return chooseChars(numCharsInRow, numRows, toBitSet(charset), null);
+    }
+
+    /**
+     * The method that calculates the average brightness of every cell of a grid of any size over the
+     * whole image. When the image splits into whole pixels the sums are exact, otherwise the cells
+     * have fractional sizes and every pixel is counted by the part of its area inside the cell.
+     * @param numCharsInRow The number of chars in each row
+     * @param numRows The number of rows of chars
+     * @return the brightness of every char of the ascii art, between 0 and 1
+     */
+    public float[][] cellBrightness(int numCharsInRow, int numRows) {
+        return cellBrightness(numCharsInRow, numRows, (double) this.img.getWidth() / numCharsInRow,
+                (double) this.img.getHeight() / numRows, null);
+    }
+
+    /**
+     * The method that calculates the average brightness of every cell of a grid, and the average color
+     * of every cell when colors is not null. The colors are read straight from the pixel rows of every
+     * band of rows, so no table of the colors of the image is kept.
+     * @param numCharsInRow The number of chars in each row
+     * @param numRows The number of rows of chars
+     * @param cellWidth the width of a cell in pixels, may be fractional
+     * @param cellHeight the height of a cell in pixels, may be fractional
+     * @param colors the array that is filled with the packed ARGB average color of every cell, or null
+     * @return the brightness of every char of the ascii art, between 0 and 1
+     */
+    private float[][] cellBrightness(int numCharsInRow, int numRows, double cellWidth, double cellHeight,
+                                     int[][] colors) {
+        brightnessTable();
+        StageEvent timer = Stats.begin(Stage.BRIGHTNESS);
+
+        float[][] brightness = new float[numRows][numCharsInRow];
+        this.rowBands.run(numRows, numCharsInRow, (fromRow, toRow) -> {
+            CellColors cellColors = colors == null ? null : new CellColors(this.img);
+            for (int row = fromRow; row < toRow; row++) {
+                rowBrightness(row, cellWidth, cellHeight, brightness[row]);
+                if (cellColors != null) {
+                    cellColors.rowColors(row, cellWidth, cellHeight, colors[row]);
+                }
+            }
+        });
+        Stats.end(timer, (long) numRows * numCharsInRow);
+        return brightness;
+    }
+
+    /**
+     * Getter for the image that is transformed
+     * @return the image, null for a matcher without an image
+     */
+    Image getImage() {
+        return this.img;
+    }
+
+    /**
+     * Method that returns the summed-area table of the brightness of the image, it is built on the first
+     * call. The shape matcher of the same image reads this table too.
+     * @return the table of the image
+     */
+    SummedAreaTable brightnessTable() {
+        if (this.brightnessTable == null) {
+            this.brightnessTable = new SummedAreaTable(this.img);
+        }
+        return this.brightnessTable;
+    }
+
+    /**
+     * Method that calculates the average brightness of the cells of one row of a grid. Cells of whole
+     * pixels are summed exactly, other cells count every pixel by the part of its area inside the cell.
+     * The summed-area table of the image must be built.
+     * @param row the row of the cells
+     * @param cellWidth the width of a cell in pixels, may be fractional
+     * @param cellHeight the height of a cell in pixels, may be fractional
+     * @param brightness the array that is filled with the brightness of every cell of the row
+     */
+    private void rowBrightness(int row, double cellWidth, double cellHeight, float[] brightness) {
+        SummedAreaTable table = this.brightnessTable;
+        int wholeWidth = (int) cellWidth;
+        int wholeHeight = (int) cellHeight;
+        if (wholeWidth == cellWidth && wholeHeight == cellHeight) {
+            for (int col = 0; col < brightness.length; col++) {
+                brightness[col] = table.averageBrightness(col * wholeWidth, row * wholeHeight, wholeWidth,
+                        wholeHeight);
+            }
+        } else {
+            for (int col = 0; col < brightness.length; col++) {
+                brightness[col] = table.averageBrightness(col * cellWidth, row * cellHeight, cellWidth,
+                        cellHeight);
+            }
         }
+    }
+
+    /**
+     * The method that calculates the average brightness and the average color of every cell of a grid of
+     * any size, like cellBrightness(int, int) and cellBrightness(int, int[][]). The brightnesses are the
+     * same as the ones cellBrightness(int, int) returns.
+     * @param numCharsInRow The number of chars in each row
+     * @param numRows The number of rows of chars
+     * @param colors the array that is filled with the packed ARGB average color of every cell, it needs
+     *               numRows rows of numCharsInRow colors
+     * @return the brightness of every char of the ascii art, between 0 and 1
+     */
+    public float[][] cellBrightness(int numCharsInRow, int numRows, int[][] colors) {
+        return cellBrightness(numCharsInRow, numRows, (double) this.img.getWidth() / numCharsInRow,
+                (double) this.img.getHeight() / numRows, colors);
+    }
+
+    /**
+     * The method that calculates the number of rows of the ascii art of the image
+     * @param numCharsInRow The number of chars in each row
+     * @return the number of rows of chars
+     */
+    @Override
+    public int cellRows(int numCharsInRow) {
+        return this.img.getHeight()/(this.img.getWidth()/numCharsInRow);
+    }
+
+    /**
+     * The method that calculates the average brightness and the average color of every sub image. The
+     * brightnesses are the same as the ones cellBrightness(int) returns.
+     * @param numCharsInRow The number of chars in each row
+     * @param colors the array that is filled with the packed ARGB average color of every sub image, it
+     *               needs cellRows(numCharsInRow) rows of numCharsInRow colors
+     * @return the brightness of every char of the ascii art, between 0 and 1
+     */
+    public float[][] cellBrightness(int numCharsInRow, int[][] colors) {
         int sizeSubs = this.img.getWidth()/numCharsInRow;
+        return cellBrightness(numCharsInRow, cellRows(numCharsInRow), sizeSubs, sizeSubs, colors);
+    }
+
+    /**
+     * The method that matches every brightness of a grid to the char with the closest brightness, after
+     * the dithering of the matcher shifts it.
+     * @param cellBrightness the brightness of every char, as returned from cellBrightness(int)
+     * @param charset the set of the chars
+     * @return The image as an ascii art - 2D array
+     */
+    public char[][] chooseChars(float[][] cellBrightness, Character[] charset) {
+        return chooseChars(cellBrightness, toBitSet(charset), null);
+    }
 
-        char[][] charsImg = new char[this.img.getHeight()/sizeSubs][numCharsInRow];
-        var subImages = this.img.subImages(sizeSubs).iterator();
+    /**
+     * The method that matches every brightness of a grid like chooseChars(float[][], Character[]), into
+     * an array of an earlier match when it has the size of the grid, so a match of an unchanged grid
+     * allocates nothing.
+     * @param cellBrightness the brightness of every char, as returned from cellBrightness(int)
+     * @param charset the char codes of the chars
+     * @param charsImg the array to fill, or null (or an array of another size) for a new array
+     * @return The image as an ascii art - 2D array, charsImg if it was reused
+     */
+    public char[][] chooseChars(float[][] cellBrightness, BitSet charset, char[][] charsImg) {
+        BrightnessQuantizer currentQuantizer = quantizer(charset);
+        StageEvent timer = Stats.begin(Stage.MATCH);
+        int numCharsInRow = cellBrightness.length == 0 ? 0 : cellBrightness[0].length;
 
-        for (int row = 0; row < charsImg.length; row++) {
-            for (int col = 0; col < charsImg[0].length; col++) {
-                charsImg[row][col] = subImgToChar(subImages.next(), charset[0]);
+        char[][] chars = fits(charsImg, cellBrightness.length, numCharsInRow) ? charsImg :
+                new char[cellBrightness.length][numCharsInRow];
+        if (this.dithering == Dithering.FLOYD_STEINBERG) {
+            startDiffusion(numCharsInRow);
+            for (int row = 0; row < chars.length; row++) {
+                diffuseErrors(cellBrightness[row], currentQuantizer, chars[row]);
             }
+        } else if (this.dithering == Dithering.ORDERED) {
+            float spread = currentQuantizer.size() > 1 ? 1f / (currentQuantizer.size() - 1) : 0;
+            this.rowBands.run(chars.length, numCharsInRow, (fromRow, toRow) -> {
+                for (int row = fromRow; row < toRow; row++) {
+                    int[] bayerRow = BAYER_MATRIX[row % BAYER_SIZE];
+                    for (int col = 0; col < numCharsInRow; col++) {
+                        float offset = ((bayerRow[col % BAYER_SIZE] + 0.5f) / BAYER_LEVELS - 0.5f) * spread;
+                        chars[row][col] = currentQuantizer.closest(cellBrightness[row][col] + offset);
+                    }
+                }
+            });
+        } else {
+            this.rowBands.run(chars.length, numCharsInRow, (fromRow, toRow) -> {
+                for (int row = fromRow; row < toRow; row++) {
+                    for (int col = 0; col < numCharsInRow; col++) {
+                        chars[row][col] = currentQuantizer.closest(cellBrightness[row][col]);
+                    }
+                }
+            });
         }
-        return charsImg;
+        Stats.end(timer, (long) chars.length * numCharsInRow);
+        return chars;
     }
 
     /**
-     * The method that fits the best character to every sub image
-     * @param img the sub image
-     * @param firstCharInSet the first char of the set (for first calculation)
-     * @return the character that fits the most for the image
+     * The method the gets a set of chars and create a 2D array of chars of any size (from the picture),
+     * into an array of an earlier match when it has the size of the grid.
+     * @param numCharsInRow The number of chars in each row
+     * @param numRows The number of rows of chars
+     * @param charset the char codes of the chars
+     * @param charsImg the array to fill, or null (or an array of another size) for a new array
+     * @return The image as an ascii art - 2D array, charsImg if it was reused
      */
-    private char subImgToChar(Image img, Character firstCharInSet)
-    {
-        float subVal = greyValueSummer(img) / (img.getWidth()*img.getHeight());
-        subVal /= MAX_RGB_VAL;
+    @Override
+    public char[][] chooseChars(int numCharsInRow, int numRows, BitSet charset, char[][] charsImg) {
+        return chooseChars(numCharsInRow, numRows, (double) this.img.getWidth() / numCharsInRow,
+                (double) this.img.getHeight() / numRows, charset, charsImg);
+    }
 
-        char c = firstCharInSet;
+    /**
+     * The method that matches every cell of a grid of the image. With Floyd-Steinberg dithering the
+     * brightness of a row is calculated when the diffusion reaches it, into one row that is reused
+     * between matches, so no brightness grid is kept and the match is timed as one stage. The other
+     * matches calculate the brightness grid first.
+     * @param numCharsInRow The number of chars in each row
+     * @param numRows The number of rows of chars
+     * @param cellWidth the width of a cell in pixels, may be fractional
+     * @param cellHeight the height of a cell in pixels, may be fractional
+     * @param charset the char codes of the chars
+     * @param charsImg the array to fill, or null (or an array of another size) for a new array
+     * @return The image as an ascii art - 2D array, charsImg if it was reused
+     */
+    private char[][] chooseChars(int numCharsInRow, int numRows, double cellWidth, double cellHeight,
+                                 BitSet charset, char[][] charsImg) {
+        if (this.dithering != Dithering.FLOYD_STEINBERG) {
+            return chooseChars(cellBrightness(numCharsInRow, numRows, cellWidth, cellHeight, null), charset,
+                    charsImg);
+        }
+        BrightnessQuantizer currentQuantizer = quantizer(charset);
+        brightnessTable();
+        StageEvent timer = Stats.begin(Stage.MATCH);
 
-        for (Character character : this.brightnessMapMatcher.keySet())
-        {
-            c = (Math.abs(this.brightnessMapMatcher.get(c) - subVal) >
-                    Math.abs(this.brightnessMapMatcher.get(character) - subVal)) ? character : c;
+        char[][] chars = fits(charsImg, numRows, numCharsInRow) ? charsImg :
+                new char[numRows][numCharsInRow];
+        if (this.rowBrightness == null || this.rowBrightness.length != numCharsInRow) {
+            this.rowBrightness = new float[numCharsInRow];
+        }
+        startDiffusion(numCharsInRow);
+        for (int row = 0; row < numRows; row++) {
+            rowBrightness(row, cellWidth, cellHeight, this.rowBrightness);
+            diffuseErrors(this.rowBrightness, currentQuantizer, chars[row]);
         }
-        return c;
+        Stats.end(timer, (long) numRows * numCharsInRow);
+        return chars;
     }
 
-     /**
-      * Method that returns the sum of all grey values in sub image
-      * @param img the sub image
-      * @return the sum of all greys values
-      */
-    private static float greyValueSummer(Image img)
-    {
-        float summer = 0;
-        for (int row = 0; row < img.getHeight(); row++) {
-            for (int col = 0; col < img.getWidth(); col++) {
-                summer+= greyValue(img.getPixel(col,row));
-            }
+    /**
+     * Function that checks if an array of chars can be reused for a grid
+     * @param charsImg the array, may be null
+     * @param numRows The number of rows of chars
+     * @param numCharsInRow The number of chars in each row
+     * @return true if the array has exactly the size of the grid
+     */
+    static boolean fits(char[][] charsImg, int numRows, int numCharsInRow) {
+        return charsImg != null && charsImg.length == numRows &&
+                (numRows == 0 || charsImg[0].length == numCharsInRow);
+    }
+
+    /**
+     * Function that converts a set of chars to the set of their char codes
+     * @param charset the set of the chars
+     * @return the char codes of the chars
+     */
+    static BitSet toBitSet(Character[] charset) {
+        BitSet codes = new BitSet();
+        for (Character character : charset) {
+            codes.set(character);
         }
-        return summer;
+        return codes;
     }
-     /**
-      * Function that calculate the grey value of the pixel.
-      * @param color the color to transfer to grey
-      * @return the grey value of the color
-      */
-    private static float greyValue(Color color)
-    {
-        return (float) (color.getRed()* RED_GREY_RATIO + color.getGreen()* GREEN_GREY_RATIO +
-                        color.getBlue() * BLUE_GREY_RATIO);
+
+    /**
+     * Method that starts a Floyd-Steinberg error diffusion. Every row depends on the row above it, so the
+     * rows are matched in order, keeping only the errors of the current row and of the next one, in two
+     * rows that are reused between matches.
+     * @param numCharsInRow The number of chars in each row
+     */
+    private void startDiffusion(int numCharsInRow) {
+        // the error of column col is kept at col + 1, so the neighbours of the edges need no checks
+        if (this.rowErrors == null || this.rowErrors.length != numCharsInRow + 2) {
+            this.rowErrors = new float[numCharsInRow + 2];
+            this.nextRowErrors = new float[numCharsInRow + 2];
+        }
+        Arrays.fill(this.rowErrors, 0);
+        Arrays.fill(this.nextRowErrors, 0);
     }
-     /**
-      * Method that normalize the map values (with the max and min values in the map).
-      */
-    private void normalizeMap()
-    {
-        float minVal = 1;
-        float maxVal = 0;
 
-        for (float value : this.brightnessMapMatcher.values())
-        {
-            maxVal = Math.max(value, maxVal);
-            minVal = Math.min(value, minVal);
+    /**
+     * Method that matches the next row of a Floyd-Steinberg error diffusion, that startDiffusion started
+     * @param rowBrightness the brightness of every char of the row
+     * @param quantizer the table of the chars
+     * @param rowChars the row that is filled with the chosen chars
+     */
+    private void diffuseErrors(float[] rowBrightness, BrightnessQuantizer quantizer, char[] rowChars) {
+        float[] rowErrors = this.rowErrors;
+        float[] nextRowErrors = this.nextRowErrors;
+        for (int col = 0; col < rowChars.length; col++) {
+            float brightness = rowBrightness[col] + rowErrors[col + 1];
+            int index = quantizer.closestIndex(brightness);
+            rowChars[col] = quantizer.charAt(index);
+            float error = brightness - quantizer.brightnessAt(index);
+            rowErrors[col + 2] += error * RIGHT_ERROR;
+            nextRowErrors[col] += error * BELOW_LEFT_ERROR;
+            nextRowErrors[col + 1] += error * BELOW_ERROR;
+            nextRowErrors[col + 2] += error * BELOW_RIGHT_ERROR;
         }
+        Arrays.fill(rowErrors, 0);
+        this.rowErrors = nextRowErrors;
+        this.nextRowErrors = rowErrors;
+    }
 
-        for (Character key : this.brightnessMapMatcher.keySet())
-        {
-            float curVal = this.brightnessMapMatcher.get(key);
-            float newVal = (curVal - minVal) / (maxVal-minVal);
-            this.brightnessMapMatcher.put(key, newVal);
+    /**
+     * Method that returns the table that matches brightnesses to the given chars, the table is rebuilt
+     * only if the chars changed since the last call.
+     * @param charset the set of the chars
+     * @return the table of the chars
+     */
+    BrightnessQuantizer quantizer(Character[] charset) {
+        return quantizer(toBitSet(charset));
+    }
+
+    /**
+     * Method that returns the table that matches brightnesses to the given chars, the table is rebuilt
+     * only if the chars changed since the last call. An empty set keeps the chars of the last call.
+     * @param charset the char codes of the chars
+     * @return the table of the chars
+     * @throws IllegalArgumentException if the set is empty and no chars were given before
+     */
+    BrightnessQuantizer quantizer(BitSet charset) {
+        if (!charset.isEmpty() && !charset.equals(this.currentCharset)) {
+            setCharset(charset);
         }
+        if (this.currentCharset.isEmpty()) {
+            throw new IllegalArgumentException(EMPTY_CHARSET_MSG);
+        }
+        if (this.quantizer == null) {
+            this.quantizer = new BrightnessQuantizer(this.currentCharset, this.charsBrightness);
+        }
+        return this.quantizer;
     }
+
      /**
       * Method that adds all characters in the set
       * @param characters set of characters.
       */
     public void charSetAdder(Character[] characters)
     {
-        for (Character character : characters) {
+        BitSet charset = toBitSet(characters);
+        charset.or(this.currentCharset);
+        if (!charset.equals(this.currentCharset)) //Keeps the table when nothing new was added
+        {
+            setCharset(charset);
+        }
+    }
+
+     /**
+      * Method that replaces the characters that are matched, the brightness of a character is calculated
+      * only the first time it is seen
+      * @param characters the char codes of the characters.
+      */
+    private void setCharset(BitSet characters)
+    {
+        GlyphBrightnessCache glyphCache = GlyphBrightnessCache.getInstance();
+        if (characters.length() > this.charsBrightness.length) //Grows the table to the largest char code
+        {
+            int oldLength = this.charsBrightness.length;
+            this.charsBrightness = Arrays.copyOf(this.charsBrightness, characters.length());
+            Arrays.fill(this.charsBrightness, oldLength, this.charsBrightness.length, Float.NaN);
+        }
+        char[] toRender = new char[characters.cardinality()];
+        int toRenderCount = 0;
+        for (int c = characters.nextSetBit(0); c >= 0; c = characters.nextSetBit(c + 1)) {
 
-            if (this.charsBrightness.get(character) == null) //Checks if the character is already in the map
+            if (Float.isNaN(this.charsBrightness[c])) //Checks if the character is already in the table
             {
-                boolean[][] booleanTable = CharRenderer.getImg(character, DEFAULT_PIXELS, this.font);
-                this.charsBrightness.put(character,brightnessByWhitesNormalized(booleanTable));
+                Float brightness = glyphCache.get(this.font, DEFAULT_PIXELS, (char) c);
+                if (brightness == null) //Renders only the characters that no earlier run has seen
+                {
+                    toRender[toRenderCount++] = (char) c;
+                }
+                else
+                {
+                    this.charsBrightness[c] = brightness;
+                }
             }
+        }
 
-            this.brightnessMapMatcher.put(character, this.charsBrightness.get(character));
+        if (toRenderCount > 0) //All the missing characters are rendered together in one pass
+        {
+            toRender = Arrays.copyOf(toRender, toRenderCount);
+            boolean[][][] booleanTables = CharRenderer.getImgs(toRender, DEFAULT_PIXELS, this.font);
+            for (int i = 0; i < toRenderCount; i++) {
+                float brightness = brightnessByWhitesNormalized(booleanTables[i]);
+                glyphCache.put(this.font, DEFAULT_PIXELS, toRender[i], brightness);
+                this.charsBrightness[toRender[i]] = brightness;
+            }
         }
-        normalizeMap();
+        glyphCache.save();
+
+        this.currentCharset = (BitSet) characters.clone();
+        this.quantizer = null;
     }
      /**
       * Function that normalize the number to be between 0 to 1
@@ -0,0 +1,120 @@
+package ascii_art.img_to_char;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * A package-private table that maps a brightness to the character with the closest brightness.
+ * The characters are kept sorted by brightness in primitive arrays, so a lookup is a binary search
+ * instead of a scan over a map. When two characters are equally close, the one with the smaller
+ * char code is chosen.
+ */
+class BrightnessQuantizer {
+    private final float[] brightnesses;
+    private final char[] chars;
+
+    /**
+     * The constructor of the table, the brightnesses of the characters are normalized (with the max and
+     * min brightnesses of the set) to be between 0 and 1
+     * @param charset the char codes of the characters, must not be empty
+     * @param charsBrightness the brightness of every character, indexed by char code
+     */
+    BrightnessQuantizer(BitSet charset, float[] charsBrightness) {
+        char[] sortedChars = new char[charset.cardinality()];
+        float minVal = 1;
+        float maxVal = 0;
+        int i = 0;
+        for (int c = charset.nextSetBit(0); c >= 0; c = charset.nextSetBit(c + 1)) {
+            sortedChars[i++] = (char) c;
+            maxVal = Math.max(charsBrightness[c], maxVal);
+            minVal = Math.min(charsBrightness[c], minVal);
+        }
+
+        // stable insertion by brightness, so among equal brightnesses the smaller char code comes first
+        float[] values = new float[sortedChars.length];
+        char[] byBrightness = new char[sortedChars.length];
+        int size = 0;
+        for (char character : sortedChars) {
+            float value = (charsBrightness[character] - minVal) / (maxVal - minVal);
+            if (Float.isNaN(value)) {
+                value = 0; // all the characters have the same brightness
+            }
+            int position = size;
+            while (position > 0 && values[position - 1] > value) {
+                position--;
+            }
+            if (position > 0 && values[position - 1] == value) {
+                continue; // a smaller char code already has this brightness
+            }
+            System.arraycopy(values, position, values, position + 1, size - position);
+            System.arraycopy(byBrightness, position, byBrightness, position + 1, size - position);
+            values[position] = value;
+            byBrightness[position] = character;
+            size++;
+        }
+        this.brightnesses = Arrays.copyOf(values, size);
+        this.chars = Arrays.copyOf(byBrightness, size);
+    }
+
+    /**
+     * Method that finds the character with the closest brightness
+     * @param brightness the brightness to match, between 0 and 1
+     * @return the character with the closest brightness
+     */
+    char closest(float brightness) {
+        return this.chars[closestIndex(brightness)];
+    }
+
+    /**
+     * Method that finds the index of the character with the closest brightness, a brightness outside of
+     * 0 to 1 (as after adding a dithering error) is matched to the darkest or the brightest character
+     * @param brightness the brightness to match
+     * @return the index of the character with the closest brightness, between 0 and size() - 1
+     */
+    int closestIndex(float brightness) {
+        int index = Arrays.binarySearch(this.brightnesses, brightness);
+        if (index >= 0) {
+            return index;
+        }
+        int above = -index - 1;
+        if (above == 0) {
+            return 0;
+        }
+        if (above == this.chars.length) {
+            return this.chars.length - 1;
+        }
+        int below = above - 1;
+        float belowDistance = Math.abs(this.brightnesses[below] - brightness);
+        float aboveDistance = Math.abs(this.brightnesses[above] - brightness);
+        if (belowDistance != aboveDistance) {
+            return belowDistance < aboveDistance ? below : above;
+        }
+        return this.chars[below] < this.chars[above] ? below : above;
+    }
+
+    /**
+     * Getter for a character of the table
+     * @param index the index of the character, as returned from closestIndex
+     * @return the character
+     */
+    char charAt(int index) {
+        return this.chars[index];
+    }
+
+    /**
+     * Getter for the brightness of a character of the table
+     * @param index the index of the character, as returned from closestIndex
+     * @return the normalized brightness of the character
+     */
+    float brightnessAt(int index) {
+        return this.brightnesses[index];
+    }
+
+    /**
+     * Getter for the number of distinct brightnesses in the table
+     * @return the number of characters in the table
+     */
+    int size() {
+        return this.chars.length;
+    }
+}
@@ -0,0 +1,92 @@
+package ascii_art.img_to_char;
+
+import image.Image;
+
+import java.util.Arrays;
+
+/**
+ * A package-private calculator of the average colors of the cells of a grid, read straight from the
+ * pixel rows of an image. Every pixel is counted by the part of its area that is inside the cell, so the
+ * cells may have fractional sizes. Only one row of pixels and the channel sums of the pixel columns of one
+ * row of cells are kept, instead of a table of the whole image, so the memory is linear in the width of
+ * the image. An object is used by one thread at a time.
+ */
+class CellColors {
+    private static final int RED_SHIFT = 16;
+    private static final int GREEN_SHIFT = 8;
+    private static final int BLUE_SHIFT = 0;
+    private static final int MAX_RGB_VAL = 255;
+    private static final int OPAQUE = 0xFF000000;
+
+    private final Image img;
+    private final int[] pixels; // a row of the image
+    private final double[] redSums; // the area-weighted sums of every pixel column of a row of cells
+    private final double[] greenSums;
+    private final double[] blueSums;
+
+    /**
+     * The constructor of the calculator
+     * @param img the image whose cells are averaged
+     */
+    CellColors(Image img) {
+        this.img = img;
+        this.pixels = new int[img.getWidth()];
+        this.redSums = new double[this.pixels.length];
+        this.greenSums = new double[this.pixels.length];
+        this.blueSums = new double[this.pixels.length];
+    }
+
+    /**
+     * Method that calculates the average color of every cell of one row of a grid
+     * @param row the row of the cells
+     * @param cellWidth the width of a cell in pixels, may be fractional
+     * @param cellHeight the height of a cell in pixels, may be fractional
+     * @param colors the array that is filled with the packed opaque ARGB average color of every cell of
+     *               the row, every channel rounded to the nearest value
+     */
+    void rowColors(int row, double cellWidth, double cellHeight, int[] colors) {
+        int width = this.pixels.length;
+        Arrays.fill(this.redSums, 0);
+        Arrays.fill(this.greenSums, 0);
+        Arrays.fill(this.blueSums, 0);
+        double top = row * cellHeight;
+        double bottom = Math.min(top + cellHeight, this.img.getHeight());
+        for (int y = (int) top; y < bottom; y++) {
+            double weight = Math.min(y + 1, bottom) - Math.max(y, top);
+            this.img.getRGBRow(0, y, width, this.pixels);
+            for (int x = 0; x < width; x++) {
+                int rgb = this.pixels[x];
+                this.redSums[x] += weight * ((rgb >> RED_SHIFT) & MAX_RGB_VAL);
+                this.greenSums[x] += weight * ((rgb >> GREEN_SHIFT) & MAX_RGB_VAL);
+                this.blueSums[x] += weight * ((rgb >> BLUE_SHIFT) & MAX_RGB_VAL);
+            }
+        }
+
+        double area = cellWidth * cellHeight;
+        for (int col = 0; col < colors.length; col++) {
+            double left = col * cellWidth;
+            double right = Math.min(left + cellWidth, width);
+            double red = 0;
+            double green = 0;
+            double blue = 0;
+            for (int x = (int) left; x < right; x++) {
+                double weight = Math.min(x + 1, right) - Math.max(x, left);
+                red += weight * this.redSums[x];
+                green += weight * this.greenSums[x];
+                blue += weight * this.blueSums[x];
+            }
+            colors[col] = OPAQUE | (average(red, area) << RED_SHIFT) | (average(green, area) << GREEN_SHIFT) |
+                    (average(blue, area) << BLUE_SHIFT);
+        }
+    }
+
+    /**
+     * Function that rounds the average of one channel to the nearest value
+     * @param sum the area-weighted sum of the channel
+     * @param area the area of the sum in pixels
+     * @return the average of the channel, at most MAX_RGB_VAL
+     */
+    private static int average(double sum, double area) {
+        return (int) Math.min(Math.round(sum / area), MAX_RGB_VAL);
+    }
+}
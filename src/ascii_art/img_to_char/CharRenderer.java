@@ -1,7 +1,15 @@
 package ascii_art.img_to_char;
 
+import stats.Counter;
+import stats.Stage;
+import stats.StageEvent;
+import stats.Stats;
+
 import java.awt.*;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Inspired by, and partly copied from
@@ -14,32 +22,101 @@ import java.awt.image.BufferedImage;
 public class CharRenderer {
     private static final double X_OFFSET_FACTOR = 0.2;
     private static final double Y_OFFSET_FACTOR = 0.75;
+    /** Rendered characters of this process, by font name and then by (pixels << 16) | char */
+    private static final Map<String, Map<Integer, boolean[][]>> CACHE = new ConcurrentHashMap<>();
 
     /**
      * Renders a given character, according to how it looks in the font specified in the
      * constructor, to a square black&white image (2D array of booleans),
      * whose dimension in pixels is specified.
+     * The returned array is shared by all the callers and must not be changed.
      */
     public static boolean[][] getImg(char c, int pixels, String fontName) {
-        int key = (pixels << 8) | c;
-        return render(c, pixels, fontName);
+        boolean[][] cached = fontCache(fontName).get(key(c, pixels));
+        if (cached != null) {
+            Counter.GLYPH_BITMAP_HITS.add(1);
+            return cached;
+        }
+        return getImgs(new char[]{c}, pixels, fontName)[0];
+    }
+
+    /**
+     * Renders the given characters like getImg, drawing all the characters that were not rendered yet
+     * in a single pass over one image.
+     * The returned arrays are shared by all the callers and must not be changed.
+     * @param chars the characters to render
+     * @param pixels the dimension of every character in pixels
+     * @param fontName the name of the font
+     * @return the image of every character, in the order of chars
+     */
+    public static boolean[][][] getImgs(char[] chars, int pixels, String fontName) {
+        Map<Integer, boolean[][]> fontCache = fontCache(fontName);
+        boolean[][][] imgs = new boolean[chars.length][][];
+        char[] missing = new char[chars.length];
+        int missingCount = 0;
+        for (int i = 0; i < chars.length; i++) {
+            imgs[i] = fontCache.get(key(chars[i], pixels));
+            if (imgs[i] == null) {
+                missing[missingCount++] = chars[i];
+            }
+        }
+        Counter.GLYPH_BITMAP_HITS.add(chars.length - missingCount);
+        Counter.GLYPH_BITMAP_MISSES.add(missingCount);
+        if (missingCount == 0) {
+            return imgs;
+        }
+
+        boolean[][][] rendered = render(missing, missingCount, pixels, fontName);
+        for (int i = 0; i < missingCount; i++) {
+            fontCache.putIfAbsent(key(missing[i], pixels), rendered[i]);
+        }
+        for (int i = 0; i < chars.length; i++) {
+            if (imgs[i] == null) {
+                imgs[i] = fontCache.get(key(chars[i], pixels));
+            }
+        }
+        return imgs;
+    }
+
+    private static Map<Integer, boolean[][]> fontCache(String fontName) {
+        return CACHE.computeIfAbsent(fontName, name -> new ConcurrentHashMap<>());
+    }
+
+    private static int key(char c, int pixels) {
+        return (pixels << 16) | c;
     }
-    private static boolean[][] render(char c, int pixels, String fontName) {
-        String charStr = Character.toString(c);
+
+    /**
+     * Draws the characters side by side into one atlas image, each clipped to its own square,
+     * and reads them back straight from the raster.
+     */
+    private static boolean[][][] render(char[] chars, int count, int pixels, String fontName) {
+        StageEvent timer = Stats.begin(Stage.GLYPHS);
         Font font = new Font(fontName, Font.PLAIN, pixels);
-        BufferedImage img = new BufferedImage(pixels, pixels, BufferedImage.TYPE_INT_ARGB);
+        int atlasWidth = pixels * count;
+        BufferedImage img = new BufferedImage(atlasWidth, pixels, BufferedImage.TYPE_INT_ARGB);
         Graphics g = img.getGraphics();
         g.setFont(font);
         int xOffset = (int)Math.round(pixels*X_OFFSET_FACTOR);
         int yOffset = (int)Math.round(pixels*Y_OFFSET_FACTOR);
-        g.drawString(charStr, xOffset, yOffset);
-        boolean[][] matrix = new boolean[pixels][pixels];
-        for(int y = 0 ; y < pixels ; y++) {
-            for(int x = 0 ; x < pixels ; x++) {
-                matrix[y][x] = img.getRGB(x, y) == 0; //is the color black
+        for (int i = 0; i < count; i++) {
+            g.setClip(i * pixels, 0, pixels, pixels);
+            g.drawString(Character.toString(chars[i]), i * pixels + xOffset, yOffset);
+        }
+        g.dispose();
+
+        int[] argb = ((DataBufferInt) img.getRaster().getDataBuffer()).getData();
+        boolean[][][] matrices = new boolean[count][pixels][pixels];
+        for (int i = 0; i < count; i++) {
+            for(int y = 0 ; y < pixels ; y++) {
+                int rowStart = y * atlasWidth + i * pixels;
+                for(int x = 0 ; x < pixels ; x++) {
+                    matrices[i][y][x] = argb[rowStart + x] == 0; //is the color black
+                }
             }
         }
-        return matrix;
+        Stats.end(timer, count);
+        return matrices;
     }
 
     //for debugging
@@ -0,0 +1,119 @@
+package ascii_art.img_to_char;
+
+import image.Image;
+import stats.Stage;
+import stats.StageEvent;
+import stats.Stats;
+
+/**
+ * The class that transfers a sequence of similar images (frames, snapshots) to ascii art, matching
+ * again only the chars whose sub image changed since the previous image.
+ * The checksum of every sub image is the sum of its grey values, taken from the summed-area table of
+ * the image, exact when the cells are whole pixels. A char depends only on that sum, so an unchanged
+ * sum always means an unchanged char. After every image, the cells whose char changed are available as
+ * a change set, so an output can redraw only them.
+ */
+public class DeltaCharMatcher {
+    private final BrightnessImgCharMatcher matcher;
+    private SummedAreaTable table; // rebuilt for every image, in the arrays of the previous one
+    private char[][] charsImg;
+    private double[] cellSums; // the checksum of every cell, the sum of its grey values
+    private int[] changedCells;
+    private int changedCount;
+    private BrightnessQuantizer lastQuantizer;
+
+    /**
+     * The constructor of this class
+     * @param font the font for the ascii art
+     */
+    public DeltaCharMatcher(String font) {
+        this.matcher = new BrightnessImgCharMatcher(font);
+    }
+
+    /**
+     * The method that renders the next image of the sequence in square chars, with the number of rows
+     * that keeps the proportions of the image. When the resolution, the size of the image or the set of
+     * chars changes, every char is matched again and reported as changed.
+     * @param img the next image
+     * @param numCharsInRow The number of chars in each row
+     * @param charset the set of the chars
+     * @return The image as an ascii art - 2D array. The same array is updated by the next calls.
+     */
+    public char[][] chooseChars(Image img, int numCharsInRow, Character[] charset) {
+        return chooseChars(img, numCharsInRow, ImgCharMatcher.cellRows(img, numCharsInRow, 1), charset);
+    }
+
+    /**
+     * The method that renders the next image of the sequence to a grid of any size, in the cells of
+     * BrightnessImgCharMatcher.cellBrightness(int, int). When the grid, the size of the image or the set
+     * of chars changes, every char is matched again and reported as changed.
+     * @param img the next image
+     * @param numCharsInRow The number of chars in each row
+     * @param numRows The number of rows of chars
+     * @param charset the set of the chars
+     * @return The image as an ascii art - 2D array. The same array is updated by the next calls.
+     */
+    public char[][] chooseChars(Image img, int numCharsInRow, int numRows, Character[] charset) {
+        if (this.table == null) {
+            this.table = new SummedAreaTable(img);
+        } else {
+            this.table.rebuild(img);
+        }
+        SummedAreaTable table = this.table;
+        BrightnessQuantizer quantizer = this.matcher.quantizer(charset);
+        double cellWidth = (double) img.getWidth() / numCharsInRow;
+        double cellHeight = (double) img.getHeight() / numRows;
+        int wholeWidth = (int) cellWidth;
+        int wholeHeight = (int) cellHeight;
+        boolean wholePixels = wholeWidth == cellWidth && wholeHeight == cellHeight;
+
+        boolean all = !BrightnessImgCharMatcher.fits(this.charsImg, numRows, numCharsInRow) ||
+                quantizer != this.lastQuantizer;
+        if (all) {
+            this.charsImg = new char[numRows][numCharsInRow];
+            this.cellSums = new double[numRows * numCharsInRow];
+            this.changedCells = new int[numRows * numCharsInRow];
+            this.lastQuantizer = quantizer;
+        }
+
+        StageEvent timer = Stats.begin(Stage.MATCH);
+        this.changedCount = 0;
+        for (int row = 0; row < numRows; row++) {
+            for (int col = 0; col < numCharsInRow; col++) {
+                int cell = row * numCharsInRow + col;
+                // the sums of whole pixels are exact longs, far below 2^53, so they are exact as doubles
+                double sum = wholePixels ?
+                        table.sum(col * wholeWidth, row * wholeHeight, wholeWidth, wholeHeight) :
+                        table.sum(col * cellWidth, row * cellHeight, cellWidth, cellHeight);
+                if (!all && sum == this.cellSums[cell]) {
+                    continue;
+                }
+                this.cellSums[cell] = sum;
+                char c = quantizer.closest(SummedAreaTable.brightness(sum, cellWidth * cellHeight));
+                if (all || c != this.charsImg[row][col]) {
+                    this.charsImg[row][col] = c;
+                    this.changedCells[this.changedCount++] = cell;
+                }
+            }
+        }
+        Stats.end(timer, (long) numRows * numCharsInRow);
+        return this.charsImg;
+    }
+
+    /**
+     * Getter for the cells whose char changed in the last call to chooseChars, as row * numCharsInRow + col
+     * in increasing order. Only the first getChangedCount() entries are valid.
+     * @return the changed cells, the array is reused by the next calls
+     */
+    public int[] getChangedCells() {
+        return this.changedCells;
+    }
+
+    /**
+     * Getter for the number of cells whose char changed in the last call to chooseChars
+     * @return the number of changed cells
+     */
+    public int getChangedCount() {
+        return this.changedCount;
+    }
+}
@@ -0,0 +1,14 @@
+package ascii_art.img_to_char;
+
+/**
+ * The ways BrightnessImgCharMatcher can spread the difference between the brightness of a sub image and
+ * the brightness of its char, so a small set of chars does not make visible bands.
+ */
+public enum Dithering {
+    /** every sub image gets the char with the closest brightness */
+    NONE,
+    /** the error of every char is carried to its right and lower neighbours (Floyd-Steinberg) */
+    FLOYD_STEINBERG,
+    /** the brightness of every sub image is shifted by its place in a 4x4 Bayer matrix */
+    ORDERED
+}
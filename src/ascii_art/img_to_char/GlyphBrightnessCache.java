@@ -0,0 +1,151 @@
+package ascii_art.img_to_char;
+
+import stats.Counter;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * A package-private, process-wide cache of the brightness of rendered characters, that is kept in a
+ * versioned file on disk. Later processes load the file and do not need to render the characters
+ * (and start AWT) again.
+ * The location of the file can be changed with the system property "ascii_art.glyphCache",
+ * an empty value disables the file.
+ */
+class GlyphBrightnessCache {
+    private static final String CACHE_FILE_PROPERTY = "ascii_art.glyphCache";
+    private static final String DEFAULT_CACHE_FILE = ".ascii_art/glyph-brightness.cache";
+    private static final int MAGIC = 0x47425243; // "GBRC"
+    private static final int VERSION = 1; // bump when the rendering of the characters changes
+    private static final String KEY_SEPARATOR = "\u0000";
+
+    private static GlyphBrightnessCache instance;
+
+    private final Path file;
+    private final Map<String, Float> brightnesses;
+    private boolean dirty;
+
+    /**
+     * The constructor of the cache, loads the file if it exists and matches the current version
+     * @param file the cache file, or null for a cache that is kept only in memory
+     */
+    private GlyphBrightnessCache(Path file) {
+        this.file = file;
+        this.brightnesses = new HashMap<>();
+        if (file != null && Files.isRegularFile(file)) {
+            load();
+        }
+    }
+
+    /**
+     * Returns the cache of this process, loading it from disk on the first call
+     * @return the glyph brightness cache
+     */
+    static synchronized GlyphBrightnessCache getInstance() {
+        if (instance == null) {
+            String location = System.getProperty(CACHE_FILE_PROPERTY,
+                    Paths.get(System.getProperty("user.home"), DEFAULT_CACHE_FILE).toString());
+            instance = new GlyphBrightnessCache(location.isEmpty() ? null : Paths.get(location));
+        }
+        return instance;
+    }
+
+    /**
+     * Returns the cached brightness of a character
+     * @param font the name of the font
+     * @param pixels the size of the rendered character in pixels
+     * @param c the character
+     * @return the brightness of the character, or null if it is not cached
+     */
+    synchronized Float get(String font, int pixels, char c) {
+        Float brightness = this.brightnesses.get(key(font, pixels, c));
+        (brightness == null ? Counter.GLYPH_BRIGHTNESS_MISSES : Counter.GLYPH_BRIGHTNESS_HITS).add(1);
+        return brightness;
+    }
+
+    /**
+     * Adds the brightness of a character to the cache, it is written to disk on the next save
+     * @param font the name of the font
+     * @param pixels the size of the rendered character in pixels
+     * @param c the character
+     * @param brightness the brightness of the character
+     */
+    synchronized void put(String font, int pixels, char c, float brightness) {
+        Float old = this.brightnesses.put(key(font, pixels, c), brightness);
+        this.dirty |= old == null || old != brightness;
+    }
+
+    /**
+     * Writes the cache to its file if something was added since the last save.
+     * The file is replaced atomically, so a concurrent process never reads half a file.
+     */
+    synchronized void save() {
+        if (this.file == null || !this.dirty) {
+            return;
+        }
+        try {
+            Path dir = this.file.toAbsolutePath().getParent();
+            Files.createDirectories(dir);
+            Path tmp = Files.createTempFile(dir, this.file.getFileName().toString(), ".tmp");
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(this.brightnesses.size());
+                for (Map.Entry<String, Float> entry : this.brightnesses.entrySet()) {
+                    String[] parts = entry.getKey().split(KEY_SEPARATOR);
+                    out.writeUTF(parts[0]);
+                    out.writeInt(Integer.parseInt(parts[1]));
+                    out.writeChar(Integer.parseInt(parts[2]));
+                    out.writeFloat(entry.getValue());
+                }
+            }
+            Files.move(tmp, this.file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            this.dirty = false;
+        } catch (IOException e) {
+            Logger.getGlobal().warning(String.format("Failed to write the glyph cache \"%s\"", this.file));
+        }
+    }
+
+    /**
+     * Reads the entries of the cache file, a file of another version is ignored
+     */
+    private void load() {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(this.file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String font = in.readUTF();
+                int pixels = in.readInt();
+                char c = in.readChar();
+                this.brightnesses.put(key(font, pixels, c), in.readFloat());
+            }
+        } catch (IOException e) {
+            this.brightnesses.clear();
+            Logger.getGlobal().warning(String.format("Ignoring the unreadable glyph cache \"%s\"", this.file));
+        }
+    }
+
+    /**
+     * Function that creates the key of a character in the map
+     * @param font the name of the font
+     * @param pixels the size of the rendered character in pixels
+     * @param c the character
+     * @return the key of the character
+     */
+    private static String key(String font, int pixels, char c) {
+        return font + KEY_SEPARATOR + pixels + KEY_SEPARATOR + (int) c;
+    }
+}
@@ -0,0 +1,70 @@
+package ascii_art.img_to_char;
+
+import image.Image;
+
+import java.util.BitSet;
+
+/**
+ * An object implementing this interface transfers an image to an ascii art, choosing a char for every
+ * sub image (cell) of the image.
+ */
+public interface ImgCharMatcher {
+    /**
+     * The method the gets a set of chars and create the 2D array of chars (from the picture).
+     * @param numCharsInRow The number of chars in each row
+     * @param charset the set of the chars
+     * @return The image as an ascii art - 2D array
+     */
+    char[][] chooseChars(int numCharsInRow, Character[] charset);
+
+    /**
+     * The method the gets a set of chars and create a 2D array of chars of any size (from the picture).
+     * The cells split the whole image, when it does not split into whole pixels the cells have
+     * fractional sizes and every pixel is counted by the part of its area inside the cell.
+     * @param numCharsInRow The number of chars in each row
+     * @param numRows The number of rows of chars
+     * @param charset the set of the chars
+     * @return The image as an ascii art - 2D array
+     */
+    char[][] chooseChars(int numCharsInRow, int numRows, Character[] charset);
+
+    /**
+     * The method the gets a set of chars and create a 2D array of chars of any size (from the picture)
+     * like chooseChars(int, int, Character[]), into the array of an earlier call when it has the size
+     * of the grid, so rendering again allocates nothing.
+     * @param numCharsInRow The number of chars in each row
+     * @param numRows The number of rows of chars
+     * @param charset the char codes of the chars
+     * @param charsImg the array to fill, or null (or an array of another size) for a new array
+     * @return The image as an ascii art - 2D array, charsImg if it was reused
+     */
+    char[][] chooseChars(int numCharsInRow, int numRows, BitSet charset, char[][] charsImg);
+
+    /**
+     * Function that calculates the number of rows that keep the proportions of an image, when every char
+     * is displayed charAspect times higher than it is wide (about 2 in a terminal, 1 for square chars)
+     * @param img the image
+     * @param numCharsInRow The number of chars in each row
+     * @param charAspect the height of a displayed char divided by its width
+     * @return the number of rows of chars, at least 1
+     */
+    static int cellRows(Image img, int numCharsInRow, double charAspect) {
+        double rows = (double) img.getHeight() * numCharsInRow / (img.getWidth() * charAspect);
+        return (int) Math.max(1, Math.round(rows));
+    }
+
+    /**
+     * The method that calculates the number of rows of the ascii art of the image
+     * @param numCharsInRow The number of chars in each row
+     * @return the number of rows of chars
+     */
+    int cellRows(int numCharsInRow);
+
+    /**
+     * Sets the number of threads that match the sub images. 1 matches sequentially.
+     * The chosen characters do not depend on this value.
+     * @param parallelism the number of threads to use, at least 1
+     * @throws IllegalArgumentException if parallelism is smaller than 1
+     */
+    void setParallelism(int parallelism);
+}
@@ -0,0 +1,14 @@
+package ascii_art.img_to_char;
+
+/**
+ * A package-private kernel that converts rows of packed ARGB pixels to the scaled grey values of
+ * SummedAreaTable.greyValue. Every implementation computes exactly the same integers.
+ */
+interface LuminanceKernel {
+    /**
+     * Replaces every packed ARGB value with its grey value multiplied by SummedAreaTable.GREY_SCALE
+     * @param pixels the row, converted in place
+     * @param length the number of pixels to convert, from index 0
+     */
+    void greyValues(int[] pixels, int length);
+}
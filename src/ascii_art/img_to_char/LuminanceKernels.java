@@ -0,0 +1,55 @@
+package ascii_art.img_to_char;
+
+import java.util.logging.Logger;
+
+/**
+ * A package-private selector of the luminance kernel of this process.
+ * The vector kernel is used when the JVM was started with "--add-modules jdk.incubator.vector", the
+ * scalar kernel otherwise. Setting the system property "ascii_art.simd" to false forces the scalar
+ * kernel. Both kernels compute the same values, so the choice only changes the speed.
+ */
+class LuminanceKernels {
+    private static final String SIMD_PROPERTY = "ascii_art.simd";
+    private static final String VECTOR_MODULE = "jdk.incubator.vector";
+    private static final String VECTOR_KERNEL = "ascii_art.img_to_char.VectorLuminanceKernel";
+    private static final LuminanceKernel KERNEL = select();
+
+    private LuminanceKernels() {
+    }
+
+    /**
+     * Returns the kernel of this process
+     * @return the luminance kernel
+     */
+    static LuminanceKernel get() {
+        return KERNEL;
+    }
+
+    /**
+     * Function that picks the kernel of this process, from the system property and the modules of the JVM
+     * @return the vector kernel if it is available and allowed, the scalar kernel otherwise
+     */
+    private static LuminanceKernel select() {
+        return select(Boolean.parseBoolean(System.getProperty(SIMD_PROPERTY, "true")),
+                ModuleLayer.boot().findModule(VECTOR_MODULE).isPresent());
+    }
+
+    /**
+     * Function that picks the kernel for a given configuration. The vector kernel is loaded by name, so its
+     * class is never linked on a JVM without the incubator module.
+     * @param simd false to force the scalar kernel
+     * @param vectorModule whether the jdk.incubator.vector module is in the boot layer
+     * @return the vector kernel if it is available and allowed, the scalar kernel otherwise
+     */
+    static LuminanceKernel select(boolean simd, boolean vectorModule) {
+        if (!simd || !vectorModule) {
+            return new ScalarLuminanceKernel();
+        }
+        try {
+            return (LuminanceKernel) Class.forName(VECTOR_KERNEL).getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            Logger.getGlobal().warning("Failed to load the vector luminance kernel: " + e);
+            return new ScalarLuminanceKernel();
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package ascii_art.img_to_char;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * A package-private runner of computations over the rows of a grid of cells, that splits the rows into
+ * bands and runs them in a fork-join pool when the grid is big enough and the parallelism allows it.
+ * The runners with the same parallelism share one pool, so a matcher that is made for a single frame or
+ * request leaves no threads behind.
+ */
+class RowBands {
+    private static final int MIN_CELLS_PER_TASK = 1024; // smaller bands are not worth a fork
+    /** the pool of every parallelism that was used, created on demand; its idle workers time out */
+    private static final Map<Integer, ForkJoinPool> POOLS = new ConcurrentHashMap<>();
+    private int parallelism;
+
+    /**
+     * The constructor of the runner, it starts sequential
+     */
+    RowBands() {
+        this.parallelism = 1;
+    }
+
+    /**
+     * Sets the number of threads that run the bands. 1 runs sequentially.
+     * @param parallelism the number of threads to use, at least 1
+     * @throws IllegalArgumentException if parallelism is smaller than 1
+     */
+    void setParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be positive");
+        }
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Getter for the number of threads that run the bands
+     * @return the parallelism of the runner
+     */
+    int getParallelism() {
+        return this.parallelism;
+    }
+
+    /**
+     * Method that runs a computation over all the rows of a grid, split into bands that run in parallel
+     * when the grid is big enough and the parallelism allows it.
+     * @param rows the number of rows in the grid
+     * @param cols the number of cells in every row
+     * @param band the computation of a band of rows
+     */
+    void run(int rows, int cols, RowBand band) {
+        if (this.parallelism == 1 || rows * cols < 2 * MIN_CELLS_PER_TASK) {
+            band.compute(0, rows);
+            return;
+        }
+        ForkJoinPool pool = POOLS.computeIfAbsent(this.parallelism, ForkJoinPool::new);
+        int bandRows = Math.max(1, MIN_CELLS_PER_TASK / cols);
+        pool.invoke(new RowBandTask(band, 0, rows, bandRows));
+    }
+
+    /**
+     * A computation over a band of rows of a grid
+     */
+    @FunctionalInterface
+    interface RowBand {
+        /**
+         * Computes the cells of the rows in the band
+         * @param fromRow the first row of the band (inclusive)
+         * @param toRow the last row of the band (exclusive)
+         */
+        void compute(int fromRow, int toRow);
+    }
+
+    /**
+     * A fork-join task that splits the rows of the grid in half until the bands are small enough
+     */
+    private static class RowBandTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final RowBand band;
+        private final int fromRow;
+        private final int toRow;
+        private final int bandRows;
+
+        /**
+         * The constructor of the task
+         * @param band the computation of a band of rows
+         * @param fromRow the first row of the band (inclusive)
+         * @param toRow the last row of the band (exclusive)
+         * @param bandRows the maximal number of rows that is computed without splitting
+         */
+        RowBandTask(RowBand band, int fromRow, int toRow, int bandRows) {
+            this.band = band;
+            this.fromRow = fromRow;
+            this.toRow = toRow;
+            this.bandRows = bandRows;
+        }
+
+        /**
+         * Computes the band, or splits it into two tasks if it is too big
+         */
+        @Override
+        protected void compute() {
+            if (toRow - fromRow <= bandRows) {
+                band.compute(fromRow, toRow);
+                return;
+            }
+            int middle = (fromRow + toRow) >>> 1;
+            invokeAll(new RowBandTask(band, fromRow, middle, bandRows),
+                    new RowBandTask(band, middle, toRow, bandRows));
+        }
+    }
+}
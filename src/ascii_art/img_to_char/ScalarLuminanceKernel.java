@@ -0,0 +1,13 @@
+package ascii_art.img_to_char;
+
+/**
+ * A package-private luminance kernel that converts one pixel at a time. It runs on every JVM.
+ */
+class ScalarLuminanceKernel implements LuminanceKernel {
+    @Override
+    public void greyValues(int[] pixels, int length) {
+        for (int i = 0; i < length; i++) {
+            pixels[i] = SummedAreaTable.greyValue(pixels[i]);
+        }
+    }
+}
@@ -0,0 +1,304 @@
+package ascii_art.img_to_char;
+
+import image.Image;
+import stats.Stage;
+import stats.StageEvent;
+import stats.Stats;
+
+import java.util.BitSet;
+
+/**
+ * The class that transfers the image to an ascii art by the shape of the chars, so edges and lines of
+ * the image are kept.
+ * Every sub image is split into PATTERN_SIZE x PATTERN_SIZE blocks (of fractional sizes when the sub
+ * image is small, every pixel counted by the part of its area inside the block) and every block is
+ * thresholded to ink or paper, the pattern is packed into one long (bit y * PATTERN_SIZE + x). The
+ * bitmap of every char is packed the same way, and the chosen char is the one whose pattern differs from
+ * the pattern of the sub image in the smallest number of bits (XOR and bitCount). When two chars are
+ * equally close, the one with the smaller char code is chosen.
+ * A sub image with an edge is thresholded at its own average brightness, a flat one at the average
+ * brightness of the whole image, so flat areas still get darker chars where the image is darker.
+ * A matcher made from a brightness matcher reads the summed-area table of that matcher, so an image that
+ * is matched both ways has one table.
+ */
+public class ShapeImgCharMatcher implements ImgCharMatcher {
+    private static final int GLYPH_PIXELS = 16; // as in the brightness matcher
+    private static final int PATTERN_SIZE = 8; // 8 x 8 bits fit exactly in a long
+    private static final int GLYPH_BLOCK = GLYPH_PIXELS / PATTERN_SIZE;
+    private static final float MIN_EDGE_CONTRAST = 0.15f; // blocks of a flat sub image differ less
+
+    private final Image img; // null when the image is the one of brightnessMatcher
+    private final BrightnessImgCharMatcher brightnessMatcher; // the owner of the table, or null
+    private final String font;
+    private final RowBands rowBands;
+    private SummedAreaTable brightnessTable; // built on the first render, once per image
+    private BitSet charset; // the char codes of chars
+    private char[] chars; // sorted, the characters of masks
+    private long[] masks; // the ink pattern of every char of chars
+
+    /**
+     * The constructor of this class
+     * @param img the image that will be transformed to an ascii art
+     * @param font the font for the ascii art
+     */
+    public ShapeImgCharMatcher(Image img, String font) {
+        this(img, null, font);
+    }
+
+    /**
+     * The constructor of a matcher of the image of a brightness matcher, that shares the summed-area
+     * table of that matcher instead of building a second table of the same image
+     * @param brightnessMatcher the matcher of the image that will be transformed to an ascii art
+     * @param font the font for the ascii art
+     */
+    public ShapeImgCharMatcher(BrightnessImgCharMatcher brightnessMatcher, String font) {
+        this(null, brightnessMatcher, font);
+    }
+
+    /**
+     * The constructor of this class
+     * @param img the image that will be transformed to an ascii art, or null
+     * @param brightnessMatcher the matcher whose image and table are used when img is null
+     * @param font the font for the ascii art
+     */
+    private ShapeImgCharMatcher(Image img, BrightnessImgCharMatcher brightnessMatcher, String font) {
+        this.img = img;
+        this.brightnessMatcher = brightnessMatcher;
+        this.font = font;
+        this.rowBands = new RowBands();
+        this.charset = new BitSet();
+        this.chars = new char[0];
+        this.masks = new long[0];
+    }
+
+    /**
+     * Sets the number of threads that match the row bands of the image. 1 matches sequentially.
+     * The chosen characters do not depend on this value.
+     * @param parallelism the number of threads to use, at least 1
+     * @throws IllegalArgumentException if parallelism is smaller than 1
+     */
+    @Override
+    public void setParallelism(int parallelism) {
+        this.rowBands.setParallelism(parallelism);
+    }
+
+    /**
+     * The method that calculates the number of rows of the ascii art of the image
+     * @param numCharsInRow The number of chars in each row
+     * @return the number of rows of chars
+     */
+    @Override
+    public int cellRows(int numCharsInRow) {
+        Image img = image();
+        return img.getHeight()/(img.getWidth()/numCharsInRow);
+    }
+
+    /**
+     * The method the gets a set of chars and create the 2D array of chars (from the picture), matching
+     * the pattern of every square sub image to the pattern of the chars.
+     * @param numCharsInRow The number of chars in each row
+     * @param charset the set of the chars
+     * @return The image as an ascii art - 2D array
+     */
+    @Override
+    public char[][] chooseChars(int numCharsInRow, Character[] charset) {
+        int sizeSubs = image().getWidth()/numCharsInRow;
+        return chooseChars(numCharsInRow, cellRows(numCharsInRow), sizeSubs, sizeSubs,
+                BrightnessImgCharMatcher.toBitSet(charset), null);
+    }
+
+    /**
+     * The method the gets a set of chars and create a 2D array of chars of any size (from the picture),
+     * matching the pattern of every cell to the pattern of the chars.
+     * @param numCharsInRow The number of chars in each row
+     * @param numRows The number of rows of chars
+     * @param charset the set of the chars
+     * @return The image as an ascii art - 2D array
+     */
+    @Override
+    public char[][] chooseChars(int numCharsInRow, int numRows, Character[] charset) {
+        return chooseChars(numCharsInRow, numRows, BrightnessImgCharMatcher.toBitSet(charset), null);
+    }
+
+    /**
+     * The method the gets a set of chars and create a 2D array of chars of any size (from the picture),
+     * into an array of an earlier match when it has the size of the grid.
+     * @param numCharsInRow The number of chars in each row
+     * @param numRows The number of rows of chars
+     * @param charset the char codes of the chars
+     * @param charsImg the array to fill, or null (or an array of another size) for a new array
+     * @return The image as an ascii art - 2D array, charsImg if it was reused
+     */
+    @Override
+    public char[][] chooseChars(int numCharsInRow, int numRows, BitSet charset, char[][] charsImg) {
+        Image img = image();
+        return chooseChars(numCharsInRow, numRows, (double) img.getWidth() / numCharsInRow,
+                (double) img.getHeight() / numRows, charset, charsImg);
+    }
+
+    /**
+     * The method that matches the pattern of every cell of a grid to the pattern of the chars
+     * @param numCharsInRow The number of chars in each row
+     * @param numRows The number of rows of chars
+     * @param cellWidth the width of a cell in pixels, may be fractional
+     * @param cellHeight the height of a cell in pixels, may be fractional
+     * @param charset the char codes of the chars
+     * @param charsImg the array to fill, or null (or an array of another size) for a new array
+     * @return The image as an ascii art - 2D array
+     * @throws IllegalArgumentException if the set is empty and no chars were given before
+     */
+    private char[][] chooseChars(int numCharsInRow, int numRows, double cellWidth, double cellHeight,
+                                 BitSet charset, char[][] charsImg) {
+        setCharset(charset);
+        if (this.chars.length == 0) {
+            throw new IllegalArgumentException(BrightnessImgCharMatcher.EMPTY_CHARSET_MSG);
+        }
+        Image img = image();
+        SummedAreaTable table = brightnessTable();
+        char[] currentChars = this.chars;
+        long[] currentMasks = this.masks;
+        StageEvent timer = Stats.begin(Stage.MATCH);
+        float imageThreshold = table.averageBrightness(0, 0, img.getWidth(), img.getHeight());
+
+        char[][] chars = BrightnessImgCharMatcher.fits(charsImg, numRows, numCharsInRow) ? charsImg :
+                new char[numRows][numCharsInRow];
+        this.rowBands.run(chars.length, numCharsInRow, (fromRow, toRow) -> {
+            float[] blocks = new float[PATTERN_SIZE * PATTERN_SIZE];
+            for (int row = fromRow; row < toRow; row++) {
+                for (int col = 0; col < numCharsInRow; col++) {
+                    long pattern = cellPattern(table, col * cellWidth, row * cellHeight, cellWidth,
+                            cellHeight, imageThreshold, blocks);
+                    chars[row][col] = closest(pattern, currentChars, currentMasks);
+                }
+            }
+        });
+        Stats.end(timer, (long) chars.length * numCharsInRow);
+        return chars;
+    }
+
+    /**
+     * Getter for the image that is transformed
+     * @return the image
+     */
+    private Image image() {
+        return this.brightnessMatcher == null ? this.img : this.brightnessMatcher.getImage();
+    }
+
+    /**
+     * Method that returns the summed-area table of the brightness of the image, the one of the brightness
+     * matcher when there is one, otherwise it is built on the first call
+     * @return the table of the image
+     */
+    private SummedAreaTable brightnessTable() {
+        if (this.brightnessMatcher != null) {
+            return this.brightnessMatcher.brightnessTable();
+        }
+        if (this.brightnessTable == null) {
+            this.brightnessTable = new SummedAreaTable(this.img);
+        }
+        return this.brightnessTable;
+    }
+
+    /**
+     * Function that packs the ink pattern of a sub image, a bit is set when its block is darker than the
+     * threshold of the sub image
+     * @param table the summed-area table of the image
+     * @param x the x coordinate of the top left corner of the sub image
+     * @param y the y coordinate of the top left corner of the sub image
+     * @param width the width of the sub image
+     * @param height the height of the sub image
+     * @param imageThreshold the threshold of a flat sub image
+     * @param blocks an array of PATTERN_SIZE * PATTERN_SIZE brightnesses to fill, reused between cells
+     * @return the pattern of the sub image
+     */
+    private static long cellPattern(SummedAreaTable table, double x, double y, double width, double height,
+                                    float imageThreshold, float[] blocks) {
+        double blockWidth = width / PATTERN_SIZE;
+        double blockHeight = height / PATTERN_SIZE;
+        float min = 1;
+        float max = 0;
+        float total = 0;
+        for (int blockY = 0; blockY < PATTERN_SIZE; blockY++) {
+            double top = y + blockY * blockHeight;
+            for (int blockX = 0; blockX < PATTERN_SIZE; blockX++) {
+                float brightness = table.averageBrightness(x + blockX * blockWidth, top, blockWidth,
+                        blockHeight);
+                blocks[blockY * PATTERN_SIZE + blockX] = brightness;
+                min = Math.min(min, brightness);
+                max = Math.max(max, brightness);
+                total += brightness;
+            }
+        }
+
+        float threshold = max - min < MIN_EDGE_CONTRAST ? imageThreshold : total / blocks.length;
+        long pattern = 0;
+        for (int i = 0; i < blocks.length; i++) {
+            if (blocks[i] < threshold) {
+                pattern |= 1L << i;
+            }
+        }
+        return pattern;
+    }
+
+    /**
+     * Function that finds the char whose pattern is the closest to a pattern
+     * @param pattern the pattern of a sub image
+     * @param chars the chars, sorted
+     * @param masks the pattern of every char
+     * @return the closest char, the smaller char code among equally close chars
+     */
+    private static char closest(long pattern, char[] chars, long[] masks) {
+        int best = 0;
+        int bestDistance = Integer.MAX_VALUE;
+        for (int i = 0; i < masks.length && bestDistance > 0; i++) {
+            int distance = Long.bitCount(pattern ^ masks[i]);
+            if (distance < bestDistance) {
+                bestDistance = distance;
+                best = i;
+            }
+        }
+        return chars[best];
+    }
+
+    /**
+     * Method that packs the patterns of the given chars, only if the chars changed since the last call
+     * @param charset the char codes of the chars
+     */
+    private void setCharset(BitSet charset) {
+        if (charset.isEmpty() || charset.equals(this.charset)) {
+            return;
+        }
+        char[] sorted = new char[charset.cardinality()];
+        int i = 0;
+        for (int c = charset.nextSetBit(0); c >= 0; c = charset.nextSetBit(c + 1)) {
+            sorted[i++] = (char) c;
+        }
+
+        boolean[][][] glyphs = CharRenderer.getImgs(sorted, GLYPH_PIXELS, this.font);
+        long[] glyphMasks = new long[sorted.length];
+        for (i = 0; i < sorted.length; i++) {
+            glyphMasks[i] = glyphPattern(glyphs[i]);
+        }
+        this.masks = glyphMasks;
+        this.chars = sorted;
+        this.charset = (BitSet) charset.clone();
+    }
+
+    /**
+     * Function that packs the ink pattern of a rendered char, a bit is set when any pixel of its block
+     * is ink, so the thin lines of the char are kept
+     * @param glyph the rendered char, true for paper
+     * @return the pattern of the char
+     */
+    private static long glyphPattern(boolean[][] glyph) {
+        long pattern = 0;
+        for (int y = 0; y < GLYPH_PIXELS; y++) {
+            for (int x = 0; x < GLYPH_PIXELS; x++) {
+                if (!glyph[y][x]) {
+                    pattern |= 1L << ((y / GLYPH_BLOCK) * PATTERN_SIZE + x / GLYPH_BLOCK);
+                }
+            }
+        }
+        return pattern;
+    }
+}
@@ -0,0 +1,244 @@
+package ascii_art.img_to_char;
+
+import image.Image;
+import stats.Stage;
+import stats.StageEvent;
+import stats.Stats;
+
+import java.awt.*;
+import java.util.Arrays;
+
+/**
+ * A package-private summed-area table (integral image) of the grey values of an image.
+ * After one pass over the pixels, the sum of the grey values of any rectangle is four lookups.
+ * The grey values are kept in fixed point (scaled by GREY_SCALE) so the sums are exact.
+ * Only the content bounds of the image are stored, the padding around them has a single color and
+ * its sum is computed from its area. The rows are converted to grey values by the LuminanceKernel of
+ * the process.
+ */
+class SummedAreaTable {
+    /** The grey ratios of the channels, scaled by GREY_SCALE (0.2126, 0.7152, 0.0722) */
+    static final int RED_GREY_WEIGHT = 2126;
+    static final int GREEN_GREY_WEIGHT = 7152;
+    static final int BLUE_GREY_WEIGHT = 722;
+    static final int GREY_SCALE = RED_GREY_WEIGHT + GREEN_GREY_WEIGHT + BLUE_GREY_WEIGHT;
+    private static final int MAX_RGB_VAL = 255;
+    private static final double MAX_GREY_SUM_PER_PIXEL = (double) GREY_SCALE * MAX_RGB_VAL;
+
+    private long[] sums;
+    private int[] row; // the grey values of a row while the table is built, kept for the next build
+    private int stride;
+    private int contentX;
+    private int contentY;
+    private int contentWidth;
+    private int contentHeight;
+    private long paddingGrey; // the grey value of every pixel outside of the content
+
+    /**
+     * The constructor of the table, goes over every pixel of the content of the image once
+     * @param img the image to build the table of
+     */
+    SummedAreaTable(Image img) {
+        this.sums = new long[0];
+        this.row = new int[0];
+        rebuild(img);
+    }
+
+    /**
+     * Method that builds the table again for another image, like the constructor. The arrays of the
+     * last image are kept when they are large enough, so the frames of a sequence of images of the same
+     * size allocate no table.
+     * @param img the image to build the table of
+     */
+    void rebuild(Image img) {
+        StageEvent timer = Stats.begin(Stage.SUMMED_AREA);
+        Rectangle content = img.getContentBounds();
+        this.contentX = content.x;
+        this.contentY = content.y;
+        this.contentWidth = content.width;
+        this.contentHeight = content.height;
+        this.paddingGrey = paddingGrey(img, content);
+        this.stride = this.contentWidth + 1;
+        int size = this.stride * (this.contentHeight + 1);
+        if (this.sums.length < size) {
+            this.sums = new long[size];
+        }
+        if (this.row.length < this.contentWidth) {
+            this.row = new int[this.contentWidth];
+        }
+
+        LuminanceKernel kernel = LuminanceKernels.get();
+        int[] row = this.row;
+        Arrays.fill(this.sums, 0, this.stride, 0); // the row of zeros before the content
+        for (int y = 0; y < this.contentHeight; y++) {
+            img.getRGBRow(this.contentX, this.contentY + y, this.contentWidth, row);
+            kernel.greyValues(row, this.contentWidth);
+            long rowSum = 0;
+            int above = y * this.stride + 1;
+            int cur = above + this.stride;
+            this.sums[cur - 1] = 0; // the column of zeros before the content
+            for (int x = 0; x < this.contentWidth; x++) {
+                rowSum += row[x];
+                this.sums[cur + x] = this.sums[above + x] + rowSum;
+            }
+        }
+        Stats.end(timer, (long) this.contentWidth * this.contentHeight);
+    }
+
+    /**
+     * Function that finds the grey value of the padding of an image
+     * @param img the image
+     * @param content the content bounds of the image
+     * @return the scaled grey value of the padding, or 0 if the image has no padding
+     */
+    private static long paddingGrey(Image img, Rectangle content) {
+        if (content.x > 0 || content.y > 0) {
+            return greyValue(img.getRGB(0, 0));
+        }
+        if (content.width < img.getWidth() || content.height < img.getHeight()) {
+            return greyValue(img.getRGB(img.getWidth() - 1, img.getHeight() - 1));
+        }
+        return 0;
+    }
+
+    /**
+     * Function that calculate the scaled grey value of a pixel.
+     * @param rgb the packed ARGB color to transfer to grey
+     * @return the grey value of the color multiplied by GREY_SCALE
+     */
+    static int greyValue(int rgb) {
+        int red = (rgb >> 16) & MAX_RGB_VAL;
+        int green = (rgb >> 8) & MAX_RGB_VAL;
+        int blue = rgb & MAX_RGB_VAL;
+        return red * RED_GREY_WEIGHT + green * GREEN_GREY_WEIGHT + blue * BLUE_GREY_WEIGHT;
+    }
+
+    /**
+     * Method that returns the sum of the scaled grey values in a rectangle
+     * @param x the x coordinate of the top left corner
+     * @param y the y coordinate of the top left corner
+     * @param width the width of the rectangle
+     * @param height the height of the rectangle
+     * @return the sum of all the grey values in the rectangle, multiplied by GREY_SCALE
+     */
+    long sum(int x, int y, int width, int height) {
+        long area = (long) width * height;
+        int left = Math.max(x - this.contentX, 0);
+        int right = Math.min(x + width - this.contentX, this.contentWidth);
+        int top = Math.max(y - this.contentY, 0);
+        int bottom = Math.min(y + height - this.contentY, this.contentHeight);
+        if (left >= right || top >= bottom) {
+            return this.paddingGrey * area; // only padding, no need to look at the table
+        }
+
+        int topRow = top * this.stride;
+        int bottomRow = bottom * this.stride;
+        long contentSum = this.sums[bottomRow + right] - this.sums[bottomRow + left]
+                - this.sums[topRow + right] + this.sums[topRow + left];
+        long contentArea = (long) (right - left) * (bottom - top);
+        return contentSum + this.paddingGrey * (area - contentArea);
+    }
+
+    /**
+     * Method that returns the sum of the scaled grey values in a rectangle whose corners may fall inside
+     * pixels, every pixel is counted by the part of its area that is inside the rectangle. The sum of a
+     * rectangle of whole pixels is the same as the one of sum(int, int, int, int).
+     * @param x the x coordinate of the top left corner
+     * @param y the y coordinate of the top left corner
+     * @param width the width of the rectangle
+     * @param height the height of the rectangle
+     * @return the area-weighted sum of the grey values in the rectangle, multiplied by GREY_SCALE
+     */
+    double sum(double x, double y, double width, double height) {
+        return integral(x + width, y + height) - integral(x, y + height) - integral(x + width, y) +
+                integral(x, y);
+    }
+
+    /**
+     * Method that returns the area-weighted sum of the scaled grey values from the top left corner of
+     * the image to a point
+     * @param x the x coordinate of the point
+     * @param y the y coordinate of the point
+     * @return the sum of the rectangle from (0, 0) to (x, y)
+     */
+    private double integral(double x, double y) {
+        double xInContent = Math.min(Math.max(x - this.contentX, 0), this.contentWidth);
+        double yInContent = Math.min(Math.max(y - this.contentY, 0), this.contentHeight);
+        double paddingArea = x * y - xInContent * yInContent;
+        return interpolate(this.sums, this.stride, this.contentWidth, this.contentHeight,
+                xInContent, yInContent) + this.paddingGrey * paddingArea;
+    }
+
+    /**
+     * Function that reads a summed-area table at a point that may fall inside a pixel. Every pixel has a
+     * single value, so inside a pixel the table is exactly the bilinear interpolation of its corners.
+     * @param sums the table, with a row and a column of zeros before the content
+     * @param stride the length of a row of the table
+     * @param width the width of the content
+     * @param height the height of the content
+     * @param x the x coordinate of the point in the content, between 0 and width
+     * @param y the y coordinate of the point in the content, between 0 and height
+     * @return the sum of the rectangle from the top left corner of the content to (x, y)
+     */
+    static double interpolate(long[] sums, int stride, int width, int height, double x, double y) {
+        if (width == 0 || height == 0) {
+            return 0;
+        }
+        int left = Math.min((int) x, width - 1);
+        int top = Math.min((int) y, height - 1);
+        double xFraction = x - left;
+        double yFraction = y - top;
+        int corner = top * stride + left;
+        double topLeft = sums[corner];
+        double topRight = sums[corner + 1];
+        double bottomLeft = sums[corner + stride];
+        double bottomRight = sums[corner + stride + 1];
+        return topLeft + xFraction * (topRight - topLeft) + yFraction * (bottomLeft - topLeft) +
+                xFraction * yFraction * (bottomRight - topRight - bottomLeft + topLeft);
+    }
+
+    /**
+     * Method that returns the area-weighted average brightness of a rectangle whose corners may fall
+     * inside pixels, between 0 (black) and 1 (white)
+     * @param x the x coordinate of the top left corner
+     * @param y the y coordinate of the top left corner
+     * @param width the width of the rectangle
+     * @param height the height of the rectangle
+     * @return the average brightness of the rectangle
+     */
+    float averageBrightness(double x, double y, double width, double height) {
+        return brightness(sum(x, y, width, height), width * height);
+    }
+
+    /**
+     * Method that returns the average brightness of a rectangle, between 0 (black) and 1 (white)
+     * @param x the x coordinate of the top left corner
+     * @param y the y coordinate of the top left corner
+     * @param width the width of the rectangle
+     * @param height the height of the rectangle
+     * @return the average brightness of the rectangle
+     */
+    float averageBrightness(int x, int y, int width, int height) {
+        return brightness(sum(x, y, width, height), (long) width * height);
+    }
+
+    /**
+     * Function that converts a sum of scaled grey values to an average brightness
+     * @param sum the sum of the scaled grey values, as returned from sum
+     * @param pixels the number of pixels in the sum
+     * @return the average brightness, between 0 (black) and 1 (white)
+     */
+    static float brightness(long sum, long pixels) {
+        return (float) (sum / (MAX_GREY_SUM_PER_PIXEL * pixels));
+    }
+
+    /**
+     * Function that converts an area-weighted sum of scaled grey values to an average brightness
+     * @param sum the sum of the scaled grey values, as returned from sum(double, double, double, double)
+     * @param area the area of the sum in pixels
+     * @return the average brightness, between 0 (black) and 1 (white)
+     */
+    static float brightness(double sum, double area) {
+        return (float) (sum / (MAX_GREY_SUM_PER_PIXEL * area));
+    }
+}
@@ -0,0 +1,34 @@
+package ascii_art.img_to_char;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * A package-private luminance kernel that converts as many pixels at a time as the widest vector of
+ * the CPU holds, with the incubating Vector API. The products and the sums are the same integer
+ * operations as the ones of SummedAreaTable.greyValue, so the results are bit-identical.
+ * This class is loaded only when the jdk.incubator.vector module is in the boot layer.
+ */
+class VectorLuminanceKernel implements LuminanceKernel {
+    private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+    private static final int CHANNEL_MASK = 0xFF;
+
+    @Override
+    public void greyValues(int[] pixels, int length) {
+        int i = 0;
+        for (int bound = SPECIES.loopBound(length); i < bound; i += SPECIES.length()) {
+            IntVector argb = IntVector.fromArray(SPECIES, pixels, i);
+            IntVector red = argb.lanewise(VectorOperators.LSHR, 16).and(CHANNEL_MASK);
+            IntVector green = argb.lanewise(VectorOperators.LSHR, 8).and(CHANNEL_MASK);
+            IntVector blue = argb.and(CHANNEL_MASK);
+            red.mul(SummedAreaTable.RED_GREY_WEIGHT)
+                    .add(green.mul(SummedAreaTable.GREEN_GREY_WEIGHT))
+                    .add(blue.mul(SummedAreaTable.BLUE_GREY_WEIGHT))
+                    .intoArray(pixels, i);
+        }
+        for (; i < length; i++) { // the tail that does not fill a vector
+            pixels[i] = SummedAreaTable.greyValue(pixels[i]);
+        }
+    }
+}
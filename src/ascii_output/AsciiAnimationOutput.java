@@ -0,0 +1,31 @@
+package ascii_output;
+
+/**
+ * An object implementing this interface can output a sequence of 2D arrays of chars as an animation.
+ * The frames are given one at a time, so the whole animation never has to be kept in memory.
+ */
+public interface AsciiAnimationOutput {
+    /**
+     * Output the next frame of the animation
+     * @param chars the chars of the frame
+     * @param delayMillis how long the frame should be shown, in milliseconds
+     */
+    void outputFrame(char[][] chars, int delayMillis);
+
+    /**
+     * Output the next frame of the animation, when only some cells changed since the previous frame.
+     * By default the whole frame is output.
+     * @param chars the chars of the frame
+     * @param changedCells the cells that changed, as row * columns + column, in increasing order
+     * @param changedCount the number of cells that changed
+     * @param delayMillis how long the frame should be shown, in milliseconds
+     */
+    default void outputChanges(char[][] chars, int[] changedCells, int changedCount, int delayMillis) {
+        outputFrame(chars, delayMillis);
+    }
+
+    /**
+     * Ends the animation, after the last frame
+     */
+    void finish();
+}
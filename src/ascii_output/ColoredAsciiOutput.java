@@ -0,0 +1,27 @@
+package ascii_output;
+
+/**
+ * An object implementing this interface can output a 2D array of chars, every char in its own color.
+ * Adjacent chars whose colors are the same after quantizeColor are written as one run of a single color.
+ */
+public interface ColoredAsciiOutput extends AsciiOutput {
+    /** Every channel keeps its 4 high bits, so a run of similar colors is not split */
+    int QUANTIZED_CHANNEL_MASK = 0xF0F0F0;
+    int QUANTIZED_CHANNEL_MIDDLE = 0x080808;
+
+    /**
+     * Output the specified 2D array of chars in the specified colors
+     * @param chars the chars
+     * @param colors the packed RGB color of every char, the alpha is ignored
+     */
+    void output(char[][] chars, int[][] colors);
+
+    /**
+     * Function that quantizes a color to the middle of its bucket
+     * @param rgb the packed RGB color
+     * @return the quantized packed RGB color, without alpha
+     */
+    static int quantizeColor(int rgb) {
+        return (rgb & QUANTIZED_CHANNEL_MASK) | QUANTIZED_CHANNEL_MIDDLE;
+    }
+}
@@ -0,0 +1,60 @@
+package ascii_output;
+
+/**
+ * Output a sequence of 2D arrays of chars to the console as an animation. Every frame is drawn over
+ * the previous one (with ANSI escape codes) and stays on the screen for its delay. When only some cells
+ * changed, only they are redrawn.
+ */
+public class ConsoleAnimationOutput implements AsciiAnimationOutput {
+    private static final String CLEAR_SCREEN = "\033[2J";
+    private static final String CURSOR_HOME = "\033[H";
+    private static final long NANOS_PER_MILLI = 1_000_000L;
+
+    private final ConsoleAsciiOutput frameOutput = new ConsoleAsciiOutput();
+    private boolean started;
+    private long nextFrameTime; // System.nanoTime() at which the next frame may be drawn
+
+    @Override
+    public void outputFrame(char[][] chars, int delayMillis) {
+        waitForNextFrame();
+        System.out.print(CURSOR_HOME);
+        this.frameOutput.output(chars);
+        System.out.flush();
+        this.nextFrameTime = System.nanoTime() + delayMillis * NANOS_PER_MILLI;
+    }
+
+    @Override
+    public void outputChanges(char[][] chars, int[] changedCells, int changedCount, int delayMillis) {
+        if (!this.started) {
+            outputFrame(chars, delayMillis); // nothing to change yet
+            return;
+        }
+        waitForNextFrame();
+        this.frameOutput.outputChanges(chars, changedCells, changedCount);
+        this.nextFrameTime = System.nanoTime() + delayMillis * NANOS_PER_MILLI;
+    }
+
+    @Override
+    public void finish() {
+        System.out.flush();
+    }
+
+    /**
+     * Clears the screen before the first frame, and waits until the previous frame was shown long enough
+     */
+    private void waitForNextFrame() {
+        if (!this.started) {
+            System.out.print(CLEAR_SCREEN);
+            this.started = true;
+            this.nextFrameTime = System.nanoTime();
+        }
+        long wait = this.nextFrameTime - System.nanoTime();
+        if (wait > 0) {
+            try {
+                Thread.sleep(wait / NANOS_PER_MILLI, (int) (wait % NANOS_PER_MILLI));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -1,16 +1,242 @@
 package ascii_output;
 
+import stats.Stage;
+import stats.StageEvent;
+import stats.Stats;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.logging.Logger;
+
 /**
- * Output a 2D array of chars to the console.
+ * Output a 2D array of chars to the console, optionally colored with 24-bit ANSI escape codes.
+ * Every frame is assembled in a buffer that is reused between frames, encoded once and written with a
+ * single write, instead of printing every char on its own.
  * @author Dan Nirel
- */public class ConsoleAsciiOutput implements AsciiOutput{
+ */public class ConsoleAsciiOutput implements ColoredAsciiOutput{
+    private static final String MOVE_CURSOR_START = "\033[";
+    private static final char MOVE_CURSOR_SEPARATOR = ';';
+    private static final char MOVE_CURSOR_END = 'H';
+    private static final int MOVE_CURSOR_MAX_LENGTH = 24;
+    private static final String SET_COLOR_START = "\033[38;2;";
+    private static final char SET_COLOR_SEPARATOR = ';';
+    private static final char SET_COLOR_END = 'm';
+    private static final int SET_COLOR_MAX_LENGTH = 19;
+    private static final String RESET_COLOR = "\033[0m";
+    private static final int SCREEN_COLUMNS_PER_CHAR = 2; // every char is followed by a space
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+
+    private final OutputStream stream; // null when writing to a channel
+    private final WritableByteChannel channel; // null when writing to a stream
+    private final CharsetEncoder encoder;
+    private CharBuffer charBuffer;
+    private ByteBuffer byteBuffer;
+
+    /**
+     * Creates an output to System.out, in the default charset
+     */
+    public ConsoleAsciiOutput() {
+        this(System.out, Charset.defaultCharset());
+    }
+
+    /**
+     * Creates an output to a stream
+     * @param stream the stream to write to, it is flushed after every frame but never closed
+     * @param charset the charset to encode the chars with
+     */
+    public ConsoleAsciiOutput(OutputStream stream, Charset charset) {
+        this.stream = stream;
+        this.channel = null;
+        this.encoder = newEncoder(charset);
+    }
+
+    /**
+     * Creates an output to a channel
+     * @param channel the channel to write to, it is never closed
+     * @param charset the charset to encode the chars with
+     */
+    public ConsoleAsciiOutput(WritableByteChannel channel, Charset charset) {
+        this.stream = null;
+        this.channel = channel;
+        this.encoder = newEncoder(charset);
+    }
+
     @Override
     public void output(char[][] chars) {
+        StageEvent timer = Stats.begin(Stage.OUTPUT);
+        int length = 0;
+        for (char[] row : chars) {
+            length += row.length * SCREEN_COLUMNS_PER_CHAR + LINE_SEPARATOR.length();
+        }
+        CharBuffer buffer = clearCharBuffer(length);
         for (int y = 0; y < chars.length ; y++) {
             for (int x = 0; x < chars[y].length; x++) {
-                System.out.print(chars[y][x] + " ");
+                buffer.put(chars[y][x]).put(' ');
             }
-            System.out.println();
+            buffer.put(LINE_SEPARATOR);
+        }
+        Stats.end(timer, write());
+    }
+
+    @Override
+    public void output(char[][] chars, int[][] colors) {
+        StageEvent timer = Stats.begin(Stage.OUTPUT);
+        int length = RESET_COLOR.length();
+        for (char[] row : chars) {
+            length += row.length * (SCREEN_COLUMNS_PER_CHAR + SET_COLOR_MAX_LENGTH) + LINE_SEPARATOR.length();
+        }
+        CharBuffer buffer = clearCharBuffer(length);
+        int currentColor = -1; // no quantized color has alpha, so the first char always sets the color
+        for (int y = 0; y < chars.length ; y++) {
+            for (int x = 0; x < chars[y].length; x++) {
+                int color = ColoredAsciiOutput.quantizeColor(colors[y][x]);
+                if (color != currentColor) {
+                    putSetColor(buffer, color);
+                    currentColor = color;
+                }
+                buffer.put(chars[y][x]).put(' ');
+            }
+            buffer.put(LINE_SEPARATOR);
+        }
+        buffer.put(RESET_COLOR);
+        Stats.end(timer, write());
+    }
+
+    /**
+     * Redraws only some cells of chars that were already output at the top left corner of the screen,
+     * moving the cursor to every run of adjacent changed cells. The cursor is left after the last row.
+     * @param chars the current chars
+     * @param changedCells the cells to redraw, as row * columns + column, in increasing order
+     * @param changedCount the number of cells to redraw
+     */
+    public void outputChanges(char[][] chars, int[] changedCells, int changedCount) {
+        if (chars.length == 0) {
+            return;
         }
+        StageEvent timer = Stats.begin(Stage.OUTPUT);
+        int columns = chars[0].length;
+        CharBuffer buffer = clearCharBuffer(
+                changedCount * (SCREEN_COLUMNS_PER_CHAR + MOVE_CURSOR_MAX_LENGTH) + MOVE_CURSOR_MAX_LENGTH);
+        int expectedCell = -1; // the cell the cursor is at after the last written char
+        for (int i = 0; i < changedCount; i++) {
+            int cell = changedCells[i];
+            int row = cell / columns;
+            int col = cell % columns;
+            if (cell != expectedCell || col == 0) {
+                putMoveCursor(buffer, row + 1, col * SCREEN_COLUMNS_PER_CHAR + 1);
+            }
+            buffer.put(chars[row][col]).put(' ');
+            expectedCell = cell + 1;
+        }
+        putMoveCursor(buffer, chars.length + 1, 1);
+        Stats.end(timer, write());
+    }
+
+    /**
+     * Clears the char buffer, growing it if it is smaller than needed
+     * @param capacity the number of chars the buffer has to hold
+     * @return the cleared buffer
+     */
+    private CharBuffer clearCharBuffer(int capacity) {
+        if (this.charBuffer == null || this.charBuffer.capacity() < capacity) {
+            this.charBuffer = CharBuffer.allocate(capacity);
+        }
+        this.charBuffer.clear();
+        return this.charBuffer;
+    }
+
+    /**
+     * Encodes the chars that were put in the char buffer and writes them in one write
+     * @return the number of bytes that were written
+     */
+    private int write() {
+        CharBuffer chars = this.charBuffer.flip();
+        int maxBytes = (int) Math.ceil(chars.remaining() * (double) this.encoder.maxBytesPerChar());
+        if (this.byteBuffer == null || this.byteBuffer.capacity() < maxBytes) {
+            this.byteBuffer = ByteBuffer.allocate(maxBytes);
+        }
+        ByteBuffer bytes = this.byteBuffer.clear();
+        this.encoder.reset();
+        CoderResult result = this.encoder.encode(chars, bytes, true);
+        if (!result.isUnderflow() || !this.encoder.flush(bytes).isUnderflow()) {
+            Logger.getGlobal().severe("Failed to encode the ascii art");
+            return 0;
+        }
+        bytes.flip();
+        int length = bytes.remaining();
+
+        try {
+            if (this.stream != null) {
+                this.stream.write(bytes.array(), bytes.arrayOffset(), bytes.remaining());
+                this.stream.flush();
+            } else {
+                while (bytes.hasRemaining()) {
+                    this.channel.write(bytes);
+                }
+            }
+        } catch (IOException e) {
+            Logger.getGlobal().severe("Failed to write the ascii art");
+            return 0;
+        }
+        return length;
+    }
+
+    /**
+     * Puts an ANSI escape code that moves the cursor, without formatting a string
+     * @param buffer the buffer to put the code in
+     * @param row the row to move to, starting from 1
+     * @param column the column to move to, starting from 1
+     */
+    private static void putMoveCursor(CharBuffer buffer, int row, int column) {
+        buffer.put(MOVE_CURSOR_START);
+        putNumber(buffer, row);
+        buffer.put(MOVE_CURSOR_SEPARATOR);
+        putNumber(buffer, column);
+        buffer.put(MOVE_CURSOR_END);
+    }
+
+    /**
+     * Puts an ANSI escape code that sets the 24-bit color of the next chars
+     * @param buffer the buffer to put the code in
+     * @param rgb the packed RGB color
+     */
+    private static void putSetColor(CharBuffer buffer, int rgb) {
+        buffer.put(SET_COLOR_START);
+        putNumber(buffer, (rgb >> 16) & 0xFF);
+        buffer.put(SET_COLOR_SEPARATOR);
+        putNumber(buffer, (rgb >> 8) & 0xFF);
+        buffer.put(SET_COLOR_SEPARATOR);
+        putNumber(buffer, rgb & 0xFF);
+        buffer.put(SET_COLOR_END);
+    }
+
+    /**
+     * Puts the decimal digits of a non negative number
+     * @param buffer the buffer to put the digits in
+     * @param number the number
+     */
+    private static void putNumber(CharBuffer buffer, int number) {
+        if (number >= 10) {
+            putNumber(buffer, number / 10);
+        }
+        buffer.put((char) ('0' + number % 10));
+    }
+
+    /**
+     * Creates an encoder that replaces chars the charset cannot encode, like PrintStream does
+     * @param charset the charset
+     * @return the encoder
+     */
+    private static CharsetEncoder newEncoder(Charset charset) {
+        return charset.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
     }
 }
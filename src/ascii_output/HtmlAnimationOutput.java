@@ -0,0 +1,103 @@
+package ascii_output;
+
+import stats.Stage;
+import stats.StageEvent;
+import stats.Stats;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.util.logging.Logger;
+
+/**
+ * Output a sequence of 2D arrays of chars to one HTML file that plays them as an animation.
+ * Every frame is written to the file as soon as it is given, as a hidden paragraph, and a small
+ * script at the end of the page shows the frames one after the other.
+ * The page is written in UTF-8, and gzip compressed when the file name ends with ".gz".
+ */
+public class HtmlAnimationOutput implements AsciiAnimationOutput {
+    private static final String FRAME_ATTRIBUTES = " class=\"frame\" data-delay=\"%d\" hidden";
+    private static final String PLAYER_SCRIPT =
+            "<script>\n"+
+            "var frames = document.getElementsByClassName(\"frame\");\n"+
+            "var current = 0;\n"+
+            "function show() {\n"+
+            "\tframes[current].hidden = true;\n"+
+            "\tcurrent = (current + 1) % frames.length;\n"+
+            "\tframes[current].hidden = false;\n"+
+            "\tsetTimeout(show, frames[current].dataset.delay);\n"+
+            "}\n"+
+            "if (frames.length > 0) {\n"+
+            "\tframes[0].hidden = false;\n"+
+            "\tsetTimeout(show, frames[0].dataset.delay);\n"+
+            "}\n"+
+            "</script>\n";
+
+    private final String fontName;
+    private final String filename;
+    private FileChannel file;
+    private HtmlPageWriter writer;
+    private boolean failed;
+
+    public HtmlAnimationOutput(String filename, String fontName) {
+        this.fontName = fontName;
+        this.filename = filename;
+    }
+
+    @Override
+    public void outputFrame(char[][] chars, int delayMillis) {
+        if (this.failed) {
+            return;
+        }
+        StageEvent timer = Stats.begin(Stage.OUTPUT);
+        long bytesBefore = this.writer == null ? 0 : this.writer.getBytesWritten();
+        try {
+            if (this.writer == null) {
+                this.file = HtmlAsciiOutput.openFile(this.filename);
+                this.writer = new HtmlPageWriter(this.file,
+                        this.filename.endsWith(HtmlAsciiOutput.GZIP_SUFFIX));
+                this.writer.write(HtmlAsciiOutput.PAGE_START);
+            }
+            this.writer.write(HtmlAsciiOutput.paragraphStart(this.fontName, chars[0].length,
+                    String.format(FRAME_ATTRIBUTES, delayMillis)));
+            this.writer.writeChars(chars);
+            this.writer.write(HtmlAsciiOutput.PARAGRAPH_END);
+        } catch (IOException e) {
+            fail();
+        } finally {
+            Stats.end(timer, this.writer == null ? 0 : this.writer.getBytesWritten() - bytesBefore);
+        }
+    }
+
+    @Override
+    public void finish() {
+        if (this.failed || this.writer == null) {
+            return;
+        }
+        StageEvent timer = Stats.begin(Stage.OUTPUT);
+        long bytesBefore = this.writer.getBytesWritten();
+        try {
+            this.writer.write(PLAYER_SCRIPT + HtmlAsciiOutput.PAGE_END);
+            this.writer.finish();
+            this.file.close();
+        } catch (IOException e) {
+            fail();
+        } finally {
+            Stats.end(timer, this.writer.getBytesWritten() - bytesBefore);
+        }
+    }
+
+    /**
+     * Logs a failure, closes the file and ignores the rest of the frames
+     */
+    private void fail() {
+        this.failed = true;
+        Logger.getGlobal().severe(String.format("Failed to write to \"%s\"", this.filename));
+        try {
+            if (this.file != null) {
+                this.file.close();
+            }
+        } catch (IOException ignored) {
+            // the failure was already reported
+        }
+    }
+}
@@ -1,63 +1,174 @@
 package ascii_output;
 
-import java.io.BufferedWriter;
-import java.io.FileWriter;
+import stats.Stage;
+import stats.StageEvent;
+import stats.Stats;
+
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.logging.Logger;
 
 /**
- * Output a 2D array of chars to an HTML file viewable in a web browser.
+ * Output a 2D array of chars, optionally colored, to an HTML file viewable in a web browser.
+ * The page is written in UTF-8, and gzip compressed when the file name ends with ".gz".
+ * The buffers of a page are kept for the next pages, so an output writes one page at a time.
  * @author Dan Nirel
  */
-public class HtmlAsciiOutput implements AsciiOutput {
+public class HtmlAsciiOutput implements ColoredAsciiOutput {
     private static final double BASE_LINE_SPACING = 0.8;
     private static final double BASE_FONT_SIZE = 150.0;
+    static final String GZIP_SUFFIX = ".gz";
+    static final String PAGE_START =
+            "<!DOCTYPE html>\n"+
+            "<html>\n"+
+            "<body style=\""+
+                "\tCOLOR:#000000;"+
+                "\tTEXT-ALIGN:center;"+
+                "\tFONT-SIZE:1px;\">\n";
+    static final String PARAGRAPH_END = "</p>\n";
+    static final String PAGE_END =
+            "</body>\n"+
+            "</html>\n";
 
     private final String fontName;
-    private final String filename;
+    private final String filename; // null when writing to a channel
+    private final OutputStream stream; // flushed after every page when not null
+    private final WritableByteChannel channel;
+    private final boolean compress;
+    private HtmlPageWriter writer; // created on the first page and reused by the next ones
 
     public HtmlAsciiOutput(String filename, String fontName) {
         this.fontName = fontName;
         this.filename = filename;
+        this.stream = null;
+        this.channel = null;
+        this.compress = filename.endsWith(GZIP_SUFFIX);
+    }
+
+    /**
+     * Creates an output that writes every page to a stream
+     * @param stream the stream to write to, it is flushed after every page but never closed
+     * @param fontName the font of the chars
+     * @param compress whether to gzip compress every page
+     */
+    public HtmlAsciiOutput(OutputStream stream, String fontName, boolean compress) {
+        this.fontName = fontName;
+        this.filename = null;
+        this.stream = stream;
+        this.channel = Channels.newChannel(stream);
+        this.compress = compress;
+    }
+
+    /**
+     * Creates an output that writes every page to a channel
+     * @param channel the channel to write to, it is never closed
+     * @param fontName the font of the chars
+     * @param compress whether to gzip compress every page
+     */
+    public HtmlAsciiOutput(WritableByteChannel channel, String fontName, boolean compress) {
+        this.fontName = fontName;
+        this.filename = null;
+        this.stream = null;
+        this.channel = channel;
+        this.compress = compress;
     }
 
     @Override
     public void output(char[][] chars) {
-        try(BufferedWriter writer = new BufferedWriter(new FileWriter(filename))) {
-            writer.write(String.format(
-                "<!DOCTYPE html>\n"+
-                "<html>\n"+
-                "<body style=\""+
-                    "\tCOLOR:#000000;"+
-                    "\tTEXT-ALIGN:center;"+
-                    "\tFONT-SIZE:1px;\">\n"+
-                "<p style=\""+
-                    "\twhite-space:pre;"+
-                    "\tFONT-FAMILY:%s;"+
-                    "\tFONT-SIZE:%frem;"+
-                    "\tLETTER-SPACING:0.15em;"+
-                    "\tLINE-HEIGHT:%fem;\">\n",
-                    fontName, BASE_FONT_SIZE/chars[0].length, BASE_LINE_SPACING));
-
-            for(int y = 0 ; y < chars.length ; y++) {
-                for (int x = 0; x < chars[y].length ; x++) {
-                    String htmlRep;
-                    switch(chars[y][x]) {
-                        case '<': htmlRep = "&lt;";  break;
-                        case '>': htmlRep = "&gt;";  break;
-                        case '&': htmlRep = "&amp;"; break;
-                        default:  htmlRep = String.valueOf(chars[y][x]);
-                    }
-                    writer.write(htmlRep);
-                }
-                writer.newLine();
+        output(chars, null);
+    }
+
+    @Override
+    public void output(char[][] chars, int[][] colors) {
+        try {
+            write(chars, colors);
+        } catch (IOException e) {
+            Logger.getGlobal().severe(this.filename == null ? "Failed to write the html page" :
+                    String.format("Failed to write to \"%s\"", this.filename));
+        }
+    }
+
+    /**
+     * Writes the page of the specified 2D array of chars like output(char[][], int[][]), but reports a
+     * failure to the caller instead of only logging it
+     * @param chars the chars
+     * @param colors the packed RGB color of every char, or null for black chars
+     * @throws IOException if the file cannot be opened or the page cannot be written
+     */
+    public void write(char[][] chars, int[][] colors) throws IOException {
+        if (this.filename == null) {
+            writePage(this.channel, chars, colors);
+            if (this.stream != null) {
+                this.stream.flush();
             }
-            writer.write(
-                "</p>\n"+
-                "</body>\n"+
-                "</html>\n");
-        } catch(IOException e) {
-            Logger.getGlobal().severe(String.format("Failed to write to \"%s\"", filename));
+            return;
+        }
+        try (FileChannel file = openFile(this.filename)) {
+            writePage(file, chars, colors);
+        }
+    }
+
+    /**
+     * Writes a whole page with one paragraph of ascii art
+     * @param channel the channel to write to
+     * @param chars the chars of the ascii art
+     * @param colors the packed RGB color of every char, or null for black chars
+     * @throws IOException if the channel fails
+     */
+    private void writePage(WritableByteChannel channel, char[][] chars, int[][] colors) throws IOException {
+        if (this.writer == null) {
+            this.writer = new HtmlPageWriter(this.compress);
         }
+        HtmlPageWriter writer = this.writer;
+        StageEvent timer = Stats.begin(Stage.OUTPUT);
+        try {
+            writer.begin(channel);
+            writer.write(PAGE_START);
+            writer.write(paragraphStart(fontName, chars[0].length, ""));
+            if (colors == null) {
+                writer.writeChars(chars);
+            } else {
+                writer.writeColoredChars(chars, colors);
+            }
+            writer.write(PARAGRAPH_END);
+            writer.write(PAGE_END);
+            writer.finish();
+        } finally {
+            Stats.end(timer, writer.getBytesWritten());
+        }
+    }
+
+    /**
+     * Opens a file for writing, replacing its content
+     * @param filename the name of the file
+     * @return the channel of the file
+     * @throws IOException if the file cannot be opened
+     */
+    static FileChannel openFile(String filename) throws IOException {
+        return FileChannel.open(Paths.get(filename), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+    }
+
+    /**
+     * The opening tag of a paragraph of ascii art
+     * @param fontName the font of the chars
+     * @param charsInRow the number of chars in every row, the font size is fitted to it
+     * @param attributes more attributes of the tag, may be empty
+     * @return the html of the opening tag
+     */
+    static String paragraphStart(String fontName, int charsInRow, String attributes) {
+        return String.format(
+            "<p%s style=\""+
+                "\twhite-space:pre;"+
+                "\tFONT-FAMILY:%s;"+
+                "\tFONT-SIZE:%frem;"+
+                "\tLETTER-SPACING:0.15em;"+
+                "\tLINE-HEIGHT:%fem;\">\n",
+                attributes, fontName, BASE_FONT_SIZE/charsInRow, BASE_LINE_SPACING);
     }
 }
@@ -0,0 +1,246 @@
+package ascii_output;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * A package-private writer of html pages to a channel, in UTF-8 and optionally gzip compressed.
+ * The text is escaped through a precomputed table into a char buffer that is encoded and written
+ * whenever it fills up, so no string is created for a char.
+ * The buffers and the deflater are kept between pages, begin starts the next page on any channel, so
+ * writing many pages allocates no buffer after the first one.
+ */
+class HtmlPageWriter {
+    private static final int BUFFER_CHARS = 1 << 16;
+    private static final int MAX_ESCAPE_LENGTH = 5;
+    private static final String SPAN_START = "<span style=\"color:#";
+    private static final String SPAN_START_END = "\">";
+    private static final String SPAN_END = "</span>";
+    private static final int SPAN_MAX_LENGTH = 40; // the end of a span and the start of the next
+    private static final int HEX_DIGITS_OF_COLOR = 6;
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+    private static final char[][] ESCAPES = new char[128][];
+    /** the gzip header of GZIPOutputStream: magic, deflate, no flags, no time, no extra flags, unknown OS */
+    private static final byte[] GZIP_HEADER =
+            {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+
+    static {
+        ESCAPES['<'] = "&lt;".toCharArray();
+        ESCAPES['>'] = "&gt;".toCharArray();
+        ESCAPES['&'] = "&amp;".toCharArray();
+    }
+
+    private final CharsetEncoder encoder;
+    private final CharBuffer chars;
+    private final ByteBuffer bytes;
+    private final Deflater deflater; // null when the pages are not compressed
+    private final CRC32 crc; // the checksum of the uncompressed bytes of a compressed page
+    private final ByteBuffer compressed; // the output of the deflater, null when not compressed
+    private WritableByteChannel channel;
+    private long bytesWritten;
+
+    /**
+     * The constructor of a writer whose first page is started with begin
+     * @param compress whether to gzip compress the pages
+     */
+    HtmlPageWriter(boolean compress) {
+        this.encoder = StandardCharsets.UTF_8.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        this.chars = CharBuffer.allocate(BUFFER_CHARS);
+        this.bytes = ByteBuffer.allocate(
+                (int) Math.ceil(BUFFER_CHARS * (double) this.encoder.maxBytesPerChar()));
+        this.deflater = compress ? new Deflater(Deflater.DEFAULT_COMPRESSION, true) : null;
+        this.crc = compress ? new CRC32() : null;
+        this.compressed = compress ? ByteBuffer.allocate(BUFFER_CHARS).order(ByteOrder.LITTLE_ENDIAN) : null;
+    }
+
+    /**
+     * The constructor of the writer, the page is started on the channel
+     * @param channel the channel to write to, it is not closed by the writer
+     * @param compress whether to gzip compress the page
+     * @throws IOException if the gzip header cannot be written
+     */
+    HtmlPageWriter(WritableByteChannel channel, boolean compress) throws IOException {
+        this(compress);
+        begin(channel);
+    }
+
+    /**
+     * Starts a new page, anything that was not finished of the last page is dropped
+     * @param channel the channel to write the page to, it is not closed by the writer
+     * @throws IOException if the gzip header cannot be written
+     */
+    void begin(WritableByteChannel channel) throws IOException {
+        this.channel = channel;
+        this.chars.clear();
+        this.encoder.reset();
+        this.bytesWritten = 0;
+        if (this.deflater != null) {
+            this.deflater.reset();
+            this.crc.reset();
+            this.compressed.clear();
+            this.compressed.put(GZIP_HEADER);
+            writeCompressed();
+        }
+    }
+
+    /**
+     * Writes a string as is, without escaping
+     * @param s the string
+     * @throws IOException if the channel fails
+     */
+    void write(String s) throws IOException {
+        int start = 0;
+        while (start < s.length()) {
+            if (!this.chars.hasRemaining()) {
+                flushChars(false);
+            }
+            int end = Math.min(s.length(), start + this.chars.remaining());
+            this.chars.put(s, start, end);
+            start = end;
+        }
+    }
+
+    /**
+     * Writes the chars, escaped for html, one line for every row
+     * @param rows the chars to write
+     * @throws IOException if the channel fails
+     */
+    void writeChars(char[][] rows) throws IOException {
+        CharBuffer chars = this.chars;
+        for (char[] row : rows) {
+            for (char c : row) {
+                if (chars.remaining() < MAX_ESCAPE_LENGTH) {
+                    flushChars(false);
+                }
+                char[] escape = c < ESCAPES.length ? ESCAPES[c] : null;
+                if (escape == null) {
+                    chars.put(c);
+                } else {
+                    chars.put(escape);
+                }
+            }
+            write(LINE_SEPARATOR);
+        }
+    }
+
+    /**
+     * Writes the chars, escaped for html, one line for every row. Every run of adjacent chars in a row whose
+     * colors are the same after quantization is written in one span of that color.
+     * @param rows the chars to write
+     * @param colors the packed RGB color of every char
+     * @throws IOException if the channel fails
+     */
+    void writeColoredChars(char[][] rows, int[][] colors) throws IOException {
+        CharBuffer chars = this.chars;
+        for (int y = 0; y < rows.length; y++) {
+            int currentColor = -1; // no quantized color has alpha, so every row starts a span
+            for (int x = 0; x < rows[y].length; x++) {
+                if (chars.remaining() < MAX_ESCAPE_LENGTH + SPAN_MAX_LENGTH) {
+                    flushChars(false);
+                }
+                int color = ColoredAsciiOutput.quantizeColor(colors[y][x]);
+                if (color != currentColor) {
+                    if (currentColor != -1) {
+                        chars.put(SPAN_END);
+                    }
+                    chars.put(SPAN_START);
+                    for (int shift = (HEX_DIGITS_OF_COLOR - 1) * 4; shift >= 0; shift -= 4) {
+                        chars.put(HEX_DIGITS[(color >> shift) & 0xF]);
+                    }
+                    chars.put(SPAN_START_END);
+                    currentColor = color;
+                }
+                char c = rows[y][x];
+                char[] escape = c < ESCAPES.length ? ESCAPES[c] : null;
+                if (escape == null) {
+                    chars.put(c);
+                } else {
+                    chars.put(escape);
+                }
+            }
+            if (rows[y].length > 0) {
+                write(SPAN_END);
+            }
+            write(LINE_SEPARATOR);
+        }
+    }
+
+    /**
+     * Writes everything that is buffered and ends the compressed stream. The next page starts with begin.
+     * @throws IOException if the channel fails
+     */
+    void finish() throws IOException {
+        flushChars(true);
+        if (this.deflater != null) {
+            this.deflater.finish();
+            while (!this.deflater.finished()) {
+                this.deflater.deflate(this.compressed);
+                writeCompressed();
+            }
+            // the gzip trailer, the checksum and the length of the uncompressed bytes
+            this.compressed.putInt((int) this.crc.getValue()).putInt((int) this.deflater.getBytesRead());
+            writeCompressed();
+        }
+    }
+
+    /**
+     * Getter for the number of bytes of the page that were encoded and written so far, before compression
+     * @return the number of bytes
+     */
+    long getBytesWritten() {
+        return this.bytesWritten;
+    }
+
+    /**
+     * Encodes the buffered chars and writes the bytes. A high surrogate at the end of the buffer is kept
+     * until its low surrogate arrives, unless this is the end of the page.
+     * @param endOfInput whether no more chars will be written
+     * @throws IOException if the channel fails
+     */
+    private void flushChars(boolean endOfInput) throws IOException {
+        this.chars.flip();
+        this.bytes.clear();
+        this.encoder.encode(this.chars, this.bytes, endOfInput);
+        if (endOfInput) {
+            this.encoder.flush(this.bytes);
+        }
+        this.chars.compact();
+        this.bytes.flip();
+        this.bytesWritten += this.bytes.remaining();
+        if (this.deflater != null) {
+            this.crc.update(this.bytes.array(), this.bytes.arrayOffset(), this.bytes.remaining());
+            this.deflater.setInput(this.bytes.array(), this.bytes.arrayOffset(), this.bytes.remaining());
+            while (!this.deflater.needsInput()) {
+                this.deflater.deflate(this.compressed);
+                writeCompressed();
+            }
+            return;
+        }
+        while (this.bytes.hasRemaining()) {
+            this.channel.write(this.bytes);
+        }
+    }
+
+    /**
+     * Writes the bytes that were put in the compressed buffer and clears it
+     * @throws IOException if the channel fails
+     */
+    private void writeCompressed() throws IOException {
+        this.compressed.flip();
+        while (this.compressed.hasRemaining()) {
+            this.channel.write(this.compressed);
+        }
+        this.compressed.clear();
+    }
+}
@@ -0,0 +1,214 @@
+package image;
+
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Iterator;
+
+/**
+ * A package-private sequence of the frames of an animated image file (GIF).
+ * The frames of a GIF may cover only a part of the picture, so every frame is drawn over a canvas
+ * that keeps the previous frames, according to the disposal method of the frame. The background of
+ * the canvas is white, like the padding of FileImage.
+ */
+class AnimatedFileFrameSequence implements FrameSequence {
+    private static final String GIF_IMAGE_FORMAT = "javax_imageio_gif_image_1.0";
+    private static final String GIF_STREAM_FORMAT = "javax_imageio_gif_stream_1.0";
+    private static final String DESCRIPTOR_NODE = "ImageDescriptor";
+    private static final String GRAPHIC_CONTROL_NODE = "GraphicControlExtension";
+    private static final String SCREEN_NODE = "LogicalScreenDescriptor";
+    private static final String RESTORE_TO_BACKGROUND = "restoreToBackgroundColor";
+    private static final String RESTORE_TO_PREVIOUS = "restoreToPrevious";
+    private static final int MILLIS_PER_DELAY_UNIT = 10; // GIF delays are in hundredths of a second
+    private static final Color BACKGROUND = Color.WHITE;
+
+    private final ImageInputStream stream;
+    private final ImageReader reader;
+    private BufferedImage canvas;
+    private BufferedImage beforeLastFrame; // the canvas to restore for "restoreToPrevious"
+    private Rectangle lastFrameBounds;
+    private String lastDisposal;
+    private int frameDelay;
+    private int nextIndex;
+
+    /**
+     * The constructor of the sequence, opens the file
+     * @param file the animated image file
+     * @throws IOException if the file cannot be opened or no reader supports it
+     */
+    AnimatedFileFrameSequence(Path file) throws IOException {
+        this.stream = ImageIO.createImageInputStream(file.toFile());
+        if (this.stream == null) {
+            throw new IOException("Cannot open " + file);
+        }
+        Iterator<ImageReader> readers = ImageIO.getImageReaders(this.stream);
+        if (!readers.hasNext()) {
+            this.stream.close();
+            throw new IOException("No image reader for " + file);
+        }
+        this.reader = readers.next();
+        this.reader.setInput(this.stream, false, false);
+        this.frameDelay = DEFAULT_DELAY_MILLIS;
+    }
+
+    /**
+     * Decodes the next frame and draws it over the previous ones
+     * @return the next frame, or null if there are no more frames
+     * @throws IOException if the frame cannot be decoded
+     */
+    @Override
+    public Image nextFrame() throws IOException {
+        BufferedImage frame;
+        try {
+            frame = this.reader.read(this.nextIndex);
+        } catch (IndexOutOfBoundsException e) {
+            return null; // the reader found no more frames
+        }
+        IIOMetadata metadata = this.reader.getImageMetadata(this.nextIndex);
+        Node root = metadata == null || !GIF_IMAGE_FORMAT.equals(metadata.getNativeMetadataFormatName()) ?
+                null : metadata.getAsTree(GIF_IMAGE_FORMAT);
+
+        if (this.canvas == null) {
+            Dimension screen = screenSize(frame);
+            this.canvas = new BufferedImage(screen.width, screen.height, BufferedImage.TYPE_INT_RGB);
+            fill(this.canvas, new Rectangle(screen));
+        }
+        disposeLastFrame();
+
+        Rectangle bounds = new Rectangle(intAttribute(root, DESCRIPTOR_NODE, "imageLeftPosition", 0),
+                intAttribute(root, DESCRIPTOR_NODE, "imageTopPosition", 0), frame.getWidth(), frame.getHeight());
+        this.lastDisposal = attribute(root, GRAPHIC_CONTROL_NODE, "disposalMethod");
+        if (RESTORE_TO_PREVIOUS.equals(this.lastDisposal)) {
+            this.beforeLastFrame = copy(this.canvas);
+        }
+        this.lastFrameBounds = bounds;
+        int delay = intAttribute(root, GRAPHIC_CONTROL_NODE, "delayTime", 0) * MILLIS_PER_DELAY_UNIT;
+        this.frameDelay = delay > 0 ? delay : DEFAULT_DELAY_MILLIS;
+
+        Graphics2D graphics = this.canvas.createGraphics();
+        graphics.drawImage(frame, bounds.x, bounds.y, null);
+        graphics.dispose();
+        this.nextIndex++;
+        return new FileImage(this.canvas);
+    }
+
+    /**
+     * Getter for how long the last frame should be shown
+     * @return the delay of the frame in milliseconds
+     */
+    @Override
+    public int getFrameDelay() {
+        return this.frameDelay;
+    }
+
+    /**
+     * Closes the file
+     * @throws IOException if the file cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        this.reader.dispose();
+        this.stream.close();
+    }
+
+    /**
+     * Method that clears the area of the previous frame, if its disposal method asks for it
+     */
+    private void disposeLastFrame() {
+        if (RESTORE_TO_BACKGROUND.equals(this.lastDisposal)) {
+            fill(this.canvas, this.lastFrameBounds);
+        } else if (RESTORE_TO_PREVIOUS.equals(this.lastDisposal) && this.beforeLastFrame != null) {
+            this.canvas = this.beforeLastFrame;
+            this.beforeLastFrame = null;
+        }
+    }
+
+    /**
+     * Method that finds the size of the whole picture of the animation
+     * @param firstFrame the first frame, used when the file does not specify the size
+     * @return the size of the picture
+     * @throws IOException if the metadata cannot be read
+     */
+    private Dimension screenSize(BufferedImage firstFrame) throws IOException {
+        IIOMetadata metadata = this.reader.getStreamMetadata();
+        Node root = metadata == null || !GIF_STREAM_FORMAT.equals(metadata.getNativeMetadataFormatName()) ?
+                null : metadata.getAsTree(GIF_STREAM_FORMAT);
+        int width = intAttribute(root, SCREEN_NODE, "logicalScreenWidth", 0);
+        int height = intAttribute(root, SCREEN_NODE, "logicalScreenHeight", 0);
+        if (width <= 0 || height <= 0) {
+            return new Dimension(firstFrame.getWidth(), firstFrame.getHeight());
+        }
+        return new Dimension(width, height);
+    }
+
+    /**
+     * Function that paints a rectangle of an image with the background color
+     * @param image the image
+     * @param bounds the rectangle to paint
+     */
+    private static void fill(BufferedImage image, Rectangle bounds) {
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(BACKGROUND);
+        graphics.fill(bounds);
+        graphics.dispose();
+    }
+
+    /**
+     * Function that copies an image
+     * @param image the image to copy
+     * @return a copy of the image
+     */
+    private static BufferedImage copy(BufferedImage image) {
+        BufferedImage copy = new BufferedImage(image.getWidth(), image.getHeight(), image.getType());
+        Graphics2D graphics = copy.createGraphics();
+        graphics.drawImage(image, 0, 0, null);
+        graphics.dispose();
+        return copy;
+    }
+
+    /**
+     * Function that finds an attribute of a child of a metadata tree
+     * @param root the root of the tree, may be null
+     * @param nodeName the name of the child
+     * @param attributeName the name of the attribute
+     * @return the value of the attribute, or null if there is no such attribute
+     */
+    private static String attribute(Node root, String nodeName, String attributeName) {
+        if (root == null) {
+            return null;
+        }
+        for (Node child = root.getFirstChild(); child != null; child = child.getNextSibling()) {
+            if (nodeName.equals(child.getNodeName())) {
+                NamedNodeMap attributes = child.getAttributes();
+                Node value = attributes == null ? null : attributes.getNamedItem(attributeName);
+                return value == null ? null : value.getNodeValue();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Function that finds a numeric attribute of a child of a metadata tree
+     * @param root the root of the tree, may be null
+     * @param nodeName the name of the child
+     * @param attributeName the name of the attribute
+     * @param defaultValue the value to return if there is no such attribute
+     * @return the value of the attribute
+     */
+    private static int intAttribute(Node root, String nodeName, String attributeName, int defaultValue) {
+        String value = attribute(root, nodeName, attributeName);
+        try {
+            return value == null ? defaultValue : Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+}
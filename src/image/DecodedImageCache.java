@@ -0,0 +1,249 @@
+package image;
+
+import stats.Counter;
+
+import java.awt.*;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.logging.Logger;
+
+/**
+ * A package-private, process-wide cache of decoded images in a directory on disk. Every entry holds the
+ * padded geometry and the content pixels of one decoded image in a raw file, that later loads map into
+ * memory and read through a MappedImage, without decoding the file again and without copying the
+ * pixels to the Java heap.
+ * An image file is keyed by its absolute path, its modification time and its size, image data in memory
+ * is keyed by the SHA-256 of its content. Both keys include the subsampling width.
+ * The directory is set with the system property "ascii_art.imageCache", by default (or when it is
+ * empty) there is no cache and every load decodes.
+ */
+class DecodedImageCache {
+    private static final String CACHE_DIR_PROPERTY = "ascii_art.imageCache";
+    private static final String ENTRY_SUFFIX = ".pixels";
+    private static final int MAGIC = 0x44504958; // "DPIX"
+    private static final int VERSION = 1; // bump when the decoding or the padding of the images changes
+    private static final int HEADER_INTS = 9; // magic, version, width, height, content bounds, padding
+    private static final ByteOrder ORDER = ByteOrder.LITTLE_ENDIAN;
+    private static final String KEY_SEPARATOR = "\u0000";
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private static DecodedImageCache instance;
+
+    private final Path dir;
+
+    /**
+     * The constructor of the cache
+     * @param dir the directory of the entries, or null for no cache
+     */
+    private DecodedImageCache(Path dir) {
+        this.dir = dir;
+    }
+
+    /**
+     * Returns the cache of this process
+     * @return the decoded image cache
+     */
+    static synchronized DecodedImageCache getInstance() {
+        if (instance == null) {
+            String location = System.getProperty(CACHE_DIR_PROPERTY, "");
+            instance = new DecodedImageCache(location.isEmpty() ? null : Paths.get(location));
+        }
+        return instance;
+    }
+
+    /**
+     * Opens an image file, from its entry if the file did not change since it was cached, otherwise by
+     * decoding it and adding an entry
+     * @param filename a path to an image file on disk
+     * @param minWidth the minimal width of the decoded image before the padding, 0 to decode every pixel
+     * @return the image
+     * @throws IOException if the file cannot be read or decoded
+     */
+    Image load(String filename, int minWidth) throws IOException {
+        if (this.dir == null) {
+            return new FileImage(filename, minWidth);
+        }
+        Path path = Paths.get(filename).toAbsolutePath().normalize();
+        BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        String key = path + KEY_SEPARATOR + attributes.lastModifiedTime().toMillis() + KEY_SEPARATOR +
+                attributes.size() + KEY_SEPARATOR + minWidth;
+        Path entry = entry(digest(key.getBytes(StandardCharsets.UTF_8)));
+        Image cached = map(entry);
+        if (cached != null) {
+            return cached;
+        }
+        FileImage img = new FileImage(filename, minWidth);
+        store(entry, img);
+        return img;
+    }
+
+    /**
+     * Opens the content of an image file that is already in memory, like load(String, int)
+     * @param data the bytes of an image file
+     * @param minWidth the minimal width of the decoded image before the padding, 0 to decode every pixel
+     * @return the image
+     * @throws IOException if the bytes cannot be decoded
+     */
+    Image load(byte[] data, int minWidth) throws IOException {
+        if (this.dir == null) {
+            return new FileImage(data, minWidth);
+        }
+        Path entry = entry(digest(data, (KEY_SEPARATOR + minWidth).getBytes(StandardCharsets.UTF_8)));
+        Image cached = map(entry);
+        if (cached != null) {
+            return cached;
+        }
+        FileImage img = new FileImage(data, minWidth);
+        store(entry, img);
+        return img;
+    }
+
+    /**
+     * Function that finds the entry file of a key
+     * @param hash the digest of the key
+     * @return the path of the entry
+     */
+    private Path entry(byte[] hash) {
+        char[] name = new char[hash.length * 2];
+        for (int i = 0; i < hash.length; i++) {
+            name[2 * i] = HEX_DIGITS[(hash[i] >> 4) & 0xF];
+            name[2 * i + 1] = HEX_DIGITS[hash[i] & 0xF];
+        }
+        return this.dir.resolve(new String(name) + ENTRY_SUFFIX);
+    }
+
+    /**
+     * Function that calculates the SHA-256 of a key
+     * @param parts the bytes of the key, in parts
+     * @return the digest
+     */
+    private static byte[] digest(byte[]... parts) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (byte[] part : parts) {
+                digest.update(part);
+            }
+            return digest.digest();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e); // every JVM has it
+        }
+    }
+
+    /**
+     * Maps an entry into memory
+     * @param entry the path of the entry
+     * @return the image of the entry, or null if there is no valid entry
+     */
+    private static Image map(Path entry) {
+        if (!Files.isRegularFile(entry)) {
+            Counter.IMAGE_CACHE_MISSES.add(1);
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(entry, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_INTS * Integer.BYTES) {
+                throw new IOException("truncated header");
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            IntBuffer ints = buffer.order(ORDER).asIntBuffer();
+            if (ints.get(0) != MAGIC || ints.get(1) != VERSION) {
+                throw new IOException("another version");
+            }
+            int width = ints.get(2);
+            int height = ints.get(3);
+            Rectangle content = new Rectangle(ints.get(4), ints.get(5), ints.get(6), ints.get(7));
+            int paddingRGB = ints.get(8);
+            if ((long) content.width * content.height != ints.capacity() - HEADER_INTS) {
+                throw new IOException("truncated pixels");
+            }
+            Counter.IMAGE_CACHE_HITS.add(1);
+            return new MappedImage(ints.position(HEADER_INTS).slice(), width, height, content, paddingRGB);
+        } catch (IOException e) {
+            Counter.IMAGE_CACHE_MISSES.add(1);
+            Logger.getGlobal().warning(
+                    String.format("Ignoring the unreadable image cache entry \"%s\"", entry));
+            return null;
+        }
+    }
+
+    /**
+     * Writes the entry of a decoded image. The entry is replaced atomically, so a concurrent load never
+     * maps half a file. A failure is only logged, the image was already decoded.
+     * @param entry the path of the entry
+     * @param img the decoded image
+     */
+    private void store(Path entry, Image img) {
+        Rectangle content = img.getContentBounds();
+        int paddingRGB = content.x > 0 || content.y > 0 ? img.getRGB(0, 0) :
+                img.getRGB(img.getWidth() - 1, img.getHeight() - 1);
+        Path tmp = null;
+        try {
+            Files.createDirectories(this.dir);
+            tmp = Files.createTempFile(this.dir, entry.getFileName().toString(), ".tmp");
+            try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+                ByteBuffer buffer = ByteBuffer.allocateDirect(
+                        Math.max(HEADER_INTS, content.width) * Integer.BYTES).order(ORDER);
+                IntBuffer ints = buffer.asIntBuffer();
+                ints.put(MAGIC).put(VERSION).put(img.getWidth()).put(img.getHeight())
+                        .put(content.x).put(content.y).put(content.width).put(content.height).put(paddingRGB);
+                writeFully(channel, buffer, ints);
+                int[] row = new int[content.width];
+                for (int y = 0; y < content.height; y++) {
+                    img.getRGBRow(content.x, content.y + y, content.width, row);
+                    ints.put(row);
+                    writeFully(channel, buffer, ints);
+                }
+            }
+            Files.move(tmp, entry, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            Logger.getGlobal().warning(String.format("Failed to write the image cache entry \"%s\"", entry));
+            deleteQuietly(tmp);
+        }
+    }
+
+    /**
+     * Function that deletes a file that is no longer needed, if it exists
+     * @param file the file, may be null
+     */
+    private static void deleteQuietly(Path file) {
+        if (file == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            Logger.getGlobal().warning(String.format("Failed to delete \"%s\"", file));
+        }
+    }
+
+    /**
+     * Function that writes the ints that were put into the int view of a buffer, and clears the view
+     * for the next part
+     * @param channel the channel to write to
+     * @param buffer the buffer
+     * @param ints the int view of the buffer, from its start
+     * @throws IOException if the channel cannot be written
+     */
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, IntBuffer ints)
+            throws IOException {
+        buffer.limit(ints.position() * Integer.BYTES).position(0);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+        ints.clear();
+    }
+}
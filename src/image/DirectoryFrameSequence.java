@@ -0,0 +1,98 @@
+package image;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * A package-private sequence of frames that are stored as numbered image files in one directory.
+ * The files are ordered by the numbers in their names (frame2 comes before frame10).
+ */
+class DirectoryFrameSequence implements FrameSequence {
+    private final List<Path> files;
+    private final int charsInRow;
+    private int nextIndex;
+
+    /**
+     * The constructor of the sequence, lists the files of the directory
+     * @param directory the directory of the frames
+     * @param charsInRow the number of chars in a row of the ascii art that will be rendered
+     * @throws IOException if the directory cannot be listed
+     */
+    DirectoryFrameSequence(Path directory, int charsInRow) throws IOException {
+        try (Stream<Path> children = Files.list(directory)) {
+            this.files = children.filter(Files::isRegularFile)
+                    .sorted(Comparator.comparing(path -> path.getFileName().toString(),
+                            DirectoryFrameSequence::compareNatural))
+                    .collect(Collectors.toList());
+        }
+        this.charsInRow = charsInRow;
+    }
+
+    /**
+     * Decodes the next file of the directory
+     * @return the next frame, or null if there are no more frames
+     * @throws IOException if the file cannot be read or decoded
+     */
+    @Override
+    public Image nextFrame() throws IOException {
+        if (this.nextIndex >= this.files.size()) {
+            return null;
+        }
+        return Image.load(this.files.get(this.nextIndex++).toString(), this.charsInRow);
+    }
+
+    /**
+     * Getter for how long a frame should be shown, the files have no delay so it is the default
+     * @return the delay of the frame in milliseconds
+     */
+    @Override
+    public int getFrameDelay() {
+        return DEFAULT_DELAY_MILLIS;
+    }
+
+    /**
+     * Nothing to release, every file is closed after it is decoded
+     */
+    @Override
+    public void close() {
+    }
+
+    /**
+     * Function that compares names so that runs of digits are compared by their numeric value
+     * @param first the first name
+     * @param second the second name
+     * @return a negative number, zero or a positive number like Comparator.compare
+     */
+    private static int compareNatural(String first, String second) {
+        int i = 0, j = 0;
+        while (i < first.length() && j < second.length()) {
+            char a = first.charAt(i), b = second.charAt(j);
+            if (Character.isDigit(a) && Character.isDigit(b)) {
+                int aEnd = i, bEnd = j;
+                while (aEnd < first.length() && Character.isDigit(first.charAt(aEnd))) aEnd++;
+                while (bEnd < second.length() && Character.isDigit(second.charAt(bEnd))) bEnd++;
+                String aDigits = first.substring(i, aEnd).replaceFirst("^0+(?=.)", "");
+                String bDigits = second.substring(j, bEnd).replaceFirst("^0+(?=.)", "");
+                int compare = aDigits.length() != bDigits.length() ?
+                        aDigits.length() - bDigits.length() : aDigits.compareTo(bDigits);
+                if (compare != 0) {
+                    return compare;
+                }
+                i = aEnd;
+                j = bEnd;
+            } else {
+                if (a != b) {
+                    return a - b;
+                }
+                i++;
+                j++;
+            }
+        }
+        return (first.length() - i) - (second.length() - j);
+    }
+}
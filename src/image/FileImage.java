@@ -1,48 +1,122 @@
 package image;
 
+import stats.Stage;
+import stats.StageEvent;
+import stats.Stats;
+
 import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
 import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
+import java.util.Iterator;
 
 
 /**
  * A package-private class of the package image.
+ * The pixels are kept packed as ARGB ints in a single row-major array. Only the pixels of the file are
+ * stored, the white padding up to the next power of 2 is computed on access.
  * @author Dan Nirel
  */
 class FileImage implements Image {
-    private static final Color DEFAULT_COLOR = Color.WHITE;
+    static final int DECODED_PIXELS_PER_CHAR = 16; // as many pixels as a rendered char has
+    private static final int DEFAULT_COLOR = Color.WHITE.getRGB();
 
-    private final Color[][] pixelArray;
+    private final int[] pixelArray;
+    private final int width;
+    private final int height;
+    private final int origWidth;
+    private final int origHeight;
+    private final int xPadding; // the padding before the first column of the file
+    private final int yPadding; // the padding before the first row of the file
 
     public FileImage(String filename) throws IOException {
-        java.awt.image.BufferedImage im = ImageIO.read(new File(filename));
-        int origWidth = im.getWidth(), origHeight = im.getHeight();
-        //im.getRGB(x, y)); getter for access to a specific RGB rates
+        this(filename, 0);
+    }
 
-        int addingToWidth = secondPowFinder(origWidth);
-        int addingToHeight = secondPowFinder(origHeight);
+    /**
+     * Opens an image, decoding only every n-th pixel in each direction when the file is much wider
+     * than needed.
+     * @param filename a path to an image file on disk
+     * @param minWidth the minimal width of the decoded image before the padding, 0 to decode every pixel
+     * @throws IOException if the file cannot be read or decoded
+     */
+    public FileImage(String filename, int minWidth) throws IOException {
+        this(decode(new File(filename), filename, minWidth));
+    }
 
-        int newWidth = origWidth + addingToWidth;
-        int newHeight = origHeight + addingToHeight;
+    /**
+     * Opens an image from the bytes of an image file, like FileImage(String, int).
+     * @param data the content of an image file
+     * @param minWidth the minimal width of the decoded image before the padding, 0 to decode every pixel
+     * @throws IOException if the bytes cannot be decoded
+     */
+    public FileImage(byte[] data, int minWidth) throws IOException {
+        this(decode(new ByteArrayInputStream(data), "the image data", minWidth));
+    }
 
-        this.pixelArray = new Color[newHeight][newWidth];
-        for (int row = 0; row < newHeight; row++) {
-            for (int col = 0; col < newWidth; col++) {
+    /**
+     * Creates an image from pixels that were already decoded, the pixels are copied.
+     * @param im the decoded pixels
+     */
+    FileImage(BufferedImage im) {
+        this.origWidth = im.getWidth();
+        this.origHeight = im.getHeight();
+
+        int addingToWidth = secondPowFinder(this.origWidth);
+        int addingToHeight = secondPowFinder(this.origHeight);
+
+        this.width = this.origWidth + addingToWidth;
+        this.height = this.origHeight + addingToHeight;
+        this.xPadding = addingToWidth / 2;
+        this.yPadding = addingToHeight / 2;
+
+        this.pixelArray = new int[this.origWidth * this.origHeight];
+        im.getRGB(0, 0, this.origWidth, this.origHeight, this.pixelArray, 0, this.origWidth);
+    }
 
-                if ((row < addingToHeight/2) || (row > newHeight - (addingToHeight/2) - 1) ||
-                        (col < addingToWidth/2) || (col > newWidth - (addingToWidth/2) - 1))
-                {
-                    this.pixelArray[row][col] = DEFAULT_COLOR;
+    /**
+     * Function that decodes an image file with source subsampling, so the decoder itself skips the
+     * pixels that are not needed and only the subsampled raster is ever allocated.
+     * @param input the file or the stream to decode, as accepted by ImageIO.createImageInputStream
+     * @param name the name of the input in error messages
+     * @param minWidth the minimal width of the decoded image, 0 to decode every pixel
+     * @return the decoded image
+     * @throws IOException if the input cannot be read or decoded
+     */
+    private static BufferedImage decode(Object input, String name, int minWidth) throws IOException {
+        try (ImageInputStream stream = ImageIO.createImageInputStream(input)) {
+            if (stream == null) {
+                throw new IOException("Cannot open " + name);
+            }
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(stream);
+            if (!readers.hasNext()) {
+                throw new IOException("No image reader for " + name);
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(stream, true, true);
+                ImageReadParam param = reader.getDefaultReadParam();
+                int subsampling = minWidth <= 0 ? 1 : Math.max(1, reader.getWidth(0) / minWidth);
+                if (subsampling > 1) {
+                    param.setSourceSubsampling(subsampling, subsampling, 0, 0);
                 }
-                else
-                {
-                    int rowFromOrig = row - (addingToHeight / 2);
-                    int colFromOrig = col - (addingToWidth / 2);
-                    pixelArray[row][col] = new Color(im.getRGB(colFromOrig, rowFromOrig));
+                StageEvent timer = Stats.begin(Stage.DECODE);
+                long pixels = 0;
+                try {
+                    BufferedImage img = reader.read(0, param);
+                    pixels = (long) img.getWidth() * img.getHeight();
+                    return img;
+                } finally {
+                    Stats.end(timer, pixels);
                 }
+            } finally {
+                reader.dispose();
             }
-
         }
     }
 
@@ -70,7 +144,7 @@ class FileImage implements Image {
      */
     @Override
     public int getWidth() {
-        return this.pixelArray[0].length;
+        return this.width;
     }
 
     /**
@@ -79,17 +153,52 @@ class FileImage implements Image {
      */
     @Override
     public int getHeight() {
-        return this.pixelArray.length;
+        return this.height;
     }
 
     /**
-     * Method that return the Color int a specific pixel
+     * Method that return the packed ARGB value of a specific pixel
      * @param x the x coordinate of the pixel
      * @param y the y coordinate of the pixel
-     * @return the Color in this pixel.
+     * @return the ARGB value in this pixel.
+     */
+    @Override
+    public int getRGB(int x, int y) {
+        int xInFile = x - this.xPadding;
+        int yInFile = y - this.yPadding;
+        if (xInFile < 0 || yInFile < 0 || xInFile >= this.origWidth || yInFile >= this.origHeight)
+        {
+            return DEFAULT_COLOR;
+        }
+        return this.pixelArray[yInFile * this.origWidth + xInFile];
+    }
+
+    /**
+     * Method that copies the packed ARGB values of a part of a row, with a single array copy when the
+     * part is inside the pixels of the file
+     * @param x the x coordinate of the first pixel
+     * @param y the y coordinate of the row
+     * @param width the number of pixels to copy
+     * @param dst the array to copy the values to, from index 0
+     */
+    @Override
+    public void getRGBRow(int x, int y, int width, int[] dst) {
+        int xInFile = x - this.xPadding;
+        int yInFile = y - this.yPadding;
+        if (xInFile < 0 || yInFile < 0 || xInFile + width > this.origWidth || yInFile >= this.origHeight)
+        {
+            Image.super.getRGBRow(x, y, width, dst);
+            return;
+        }
+        System.arraycopy(this.pixelArray, yInFile * this.origWidth + xInFile, dst, 0, width);
+    }
+
+    /**
+     * Method that returns the part of the image that holds the pixels of the file
+     * @return the bounds of the pixels of the file, without the padding
      */
     @Override
-    public Color getPixel(int x, int y) {
-        return this.pixelArray[y][x];
+    public Rectangle getContentBounds() {
+        return new Rectangle(this.xPadding, this.yPadding, this.origWidth, this.origHeight);
     }
 }
@@ -0,0 +1,52 @@
+package image;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * A sequence of images that are shown one after the other, like the frames of an animated GIF or a
+ * directory of numbered images. The frames are decoded one at a time, when they are asked for.
+ */
+public interface FrameSequence extends AutoCloseable {
+    /** The delay between frames when the source does not specify it */
+    int DEFAULT_DELAY_MILLIS = 100;
+
+    /**
+     * Decodes the next frame of the sequence
+     * @return the next frame, or null if there are no more frames
+     * @throws IOException if the frame cannot be read or decoded
+     */
+    Image nextFrame() throws IOException;
+
+    /**
+     * Getter for how long the last frame returned from nextFrame should be shown
+     * @return the delay of the frame in milliseconds
+     */
+    int getFrameDelay();
+
+    /**
+     * Releases the files of the sequence
+     * @throws IOException if the files cannot be closed
+     */
+    @Override
+    void close() throws IOException;
+
+    /**
+     * Opens a sequence of frames from disk. A directory is a sequence of the images in it, ordered by
+     * the numbers in their names, and any other file is read as an animated image (GIF).
+     * Each dimensions of every frame is guaranteed to be a power of 2, like Image.fromFile.
+     * @param path a path to an animated image or to a directory of frames
+     * @param charsInRow the number of chars in a row of the ascii art that will be rendered
+     * @return the sequence of the frames
+     * @throws IOException if the path cannot be opened
+     */
+    static FrameSequence open(String path, int charsInRow) throws IOException {
+        Path file = Paths.get(path);
+        if (Files.isDirectory(file)) {
+            return new DirectoryFrameSequence(file, charsInRow);
+        }
+        return new AnimatedFileFrameSequence(file);
+    }
+}
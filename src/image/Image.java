@@ -14,7 +14,30 @@ public interface Image {
      * @param y the y coordinate of the pixel
      * @return the color in the coordinate
      */
-    Color getPixel(int x, int y);
+    default Color getPixel(int x, int y) {
+        return new Color(getRGB(x, y));
+    }
+
+    /**
+     * Returns the packed ARGB value of the pixel in the x,y coordinate, without allocating a Color
+     * @param x the x coordinate of the pixel
+     * @param y the y coordinate of the pixel
+     * @return the ARGB value in the coordinate (8 bits per channel, blue in the lowest byte)
+     */
+    int getRGB(int x, int y);
+
+    /**
+     * Copies the packed ARGB values of consecutive pixels of a row, like calling getRGB for each of them
+     * @param x the x coordinate of the first pixel
+     * @param y the y coordinate of the row
+     * @param width the number of pixels to copy
+     * @param dst the array to copy the values to, from index 0
+     */
+    default void getRGBRow(int x, int y, int width, int[] dst) {
+        for (int i = 0; i < width; i++) {
+            dst[i] = getRGB(x + i, y);
+        }
+    }
 
     /**
      * Getter for the width of the image
@@ -28,21 +51,73 @@ public interface Image {
      */
     int getHeight();
 
+    /**
+     * Returns the part of the image that holds the pixels of the picture. Every pixel outside of it is
+     * padding, and all the padding pixels have the same color.
+     * @return the bounds of the picture inside the image, by default the whole image
+     */
+    default Rectangle getContentBounds() {
+        return new Rectangle(0, 0, getWidth(), getHeight());
+    }
+
     /**
      * Open an image from file. Each dimensions of the returned image is guaranteed
-     * to be a power of 2, but the dimensions may be different.
+     * to be a power of 2, but the dimensions may be different. When the system property
+     * "ascii_art.imageCache" names a directory, the decoded pixels are kept there and the next opens of
+     * the same unchanged file map them instead of decoding again.
      * @param filename a path to an image file on disk
      * @return an object implementing Image if the operation was successful,
      * null otherwise
      */
     static Image fromFile(String filename) {
         try {
-            return new FileImage(filename);
+            return DecodedImageCache.getInstance().load(filename, 0);
         } catch(IOException ioe) {
             return null;
         }
     }
 
+    /**
+     * Open an image from file, decoding only as many pixels as needed to render the given number of
+     * chars in a row (the file is subsampled by the decoder, keeping at least
+     * FileImage.DECODED_PIXELS_PER_CHAR pixels for every char). Each dimensions of the returned image
+     * is guaranteed to be a power of 2, but the dimensions may be different.
+     * @param filename a path to an image file on disk
+     * @param charsInRow the number of chars in a row of the ascii art that will be rendered
+     * @return an object implementing Image if the operation was successful,
+     * null otherwise
+     */
+    static Image fromFile(String filename, int charsInRow) {
+        try {
+            return load(filename, charsInRow);
+        } catch(IOException ioe) {
+            return null;
+        }
+    }
+
+    /**
+     * Like fromFile(String, int), but reports why the file could not be opened.
+     * @param filename a path to an image file on disk
+     * @param charsInRow the number of chars in a row of the ascii art that will be rendered
+     * @return an object implementing Image
+     * @throws IOException if the file cannot be read or decoded
+     */
+    static Image load(String filename, int charsInRow) throws IOException {
+        return DecodedImageCache.getInstance().load(filename, charsInRow * FileImage.DECODED_PIXELS_PER_CHAR);
+    }
+
+    /**
+     * Like load(String, int), but decodes the content of an image file that is already in memory. The
+     * decoded image cache keys the content by its SHA-256.
+     * @param data the bytes of an image file
+     * @param charsInRow the number of chars in a row of the ascii art that will be rendered
+     * @return an object implementing Image
+     * @throws IOException if the bytes cannot be decoded
+     */
+    static Image load(byte[] data, int charsInRow) throws IOException {
+        return DecodedImageCache.getInstance().load(data, charsInRow * FileImage.DECODED_PIXELS_PER_CHAR);
+    }
+
     /**
      * Allows iterating the pixels' colors by order (first row, second row and so on).
      * @return an Iterable<Color> that can be traversed with a foreach loop
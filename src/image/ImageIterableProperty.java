@@ -2,7 +2,6 @@ package image;
 
 import java.util.Iterator;
 import java.util.NoSuchElementException;
-import java.util.function.BiFunction;
 
 /**
  * A package-private class of the package image.
@@ -10,8 +9,25 @@ import java.util.function.BiFunction;
  */
 class ImageIterableProperty<T> implements Iterable<T> {
     public static final int DEFAULT_ADVANCE = 1;
+
+    /**
+     * The function that calculates the property of a place in the image, from primitive coordinates so
+     * the coordinates of every iteration are not boxed
+     * @param <T> the type of the property
+     */
+    @FunctionalInterface
+    interface PropertySupplier<T> {
+        /**
+         * Calculates the property of a place in the image
+         * @param x the x coordinate of the place
+         * @param y the y coordinate of the place
+         * @return the property
+         */
+        T apply(int x, int y);
+    }
+
     private final Image img;
-    private final BiFunction<Integer, Integer, T> propertySupplier;
+    private final PropertySupplier<T> propertySupplier;
     private final int advanceInX;
     private final int advanceInY;
 
@@ -22,7 +38,7 @@ class ImageIterableProperty<T> implements Iterable<T> {
      */
     public ImageIterableProperty(
             Image img,
-            BiFunction<Integer, Integer, T> propertySupplier) {
+            PropertySupplier<T> propertySupplier) {
         this.img = img;
         this.propertySupplier = propertySupplier;
         this.advanceInX = DEFAULT_ADVANCE;
@@ -38,7 +54,7 @@ class ImageIterableProperty<T> implements Iterable<T> {
      */
     public ImageIterableProperty(
             Image img,
-            BiFunction<Integer, Integer, T> propertySupplier,
+            PropertySupplier<T> propertySupplier,
             int advanceInX, int advanceInY)
     {
         this.img = img;
@@ -0,0 +1,101 @@
+package image;
+
+import java.awt.*;
+import java.nio.IntBuffer;
+
+/**
+ * A package-private image whose pixels are read straight from a buffer, usually a file of
+ * DecodedImageCache that is mapped into memory, so the pixels are not copied to the Java heap.
+ * Like FileImage, the buffer holds only the pixels of the picture, row after row, and every pixel
+ * outside of the content bounds has the padding color.
+ */
+class MappedImage implements Image {
+    private final IntBuffer pixels;
+    private final int width;
+    private final int height;
+    private final Rectangle content;
+    private final int paddingRGB;
+
+    /**
+     * The constructor of the image
+     * @param pixels the packed ARGB values of the content, read only with absolute gets, so the image
+     *               can be shared between threads
+     * @param width the width of the image, with the padding
+     * @param height the height of the image, with the padding
+     * @param content the bounds of the content inside the image
+     * @param paddingRGB the packed ARGB value of every pixel outside of the content
+     */
+    MappedImage(IntBuffer pixels, int width, int height, Rectangle content, int paddingRGB) {
+        this.pixels = pixels;
+        this.width = width;
+        this.height = height;
+        this.content = new Rectangle(content);
+        this.paddingRGB = paddingRGB;
+    }
+
+    /**
+     * Method that returns the width of the image
+     * @return the width of the image
+     */
+    @Override
+    public int getWidth() {
+        return this.width;
+    }
+
+    /**
+     * Method that returns the Height of the image
+     * @return the height of the image
+     */
+    @Override
+    public int getHeight() {
+        return this.height;
+    }
+
+    /**
+     * Method that return the packed ARGB value of a specific pixel
+     * @param x the x coordinate of the pixel
+     * @param y the y coordinate of the pixel
+     * @return the ARGB value in this pixel.
+     */
+    @Override
+    public int getRGB(int x, int y) {
+        int xInContent = x - this.content.x;
+        int yInContent = y - this.content.y;
+        if (xInContent < 0 || yInContent < 0 || xInContent >= this.content.width ||
+                yInContent >= this.content.height)
+        {
+            return this.paddingRGB;
+        }
+        return this.pixels.get(yInContent * this.content.width + xInContent);
+    }
+
+    /**
+     * Method that copies the packed ARGB values of a part of a row, with a single bulk get when the
+     * part is inside the content
+     * @param x the x coordinate of the first pixel
+     * @param y the y coordinate of the row
+     * @param width the number of pixels to copy
+     * @param dst the array to copy the values to, from index 0
+     */
+    @Override
+    public void getRGBRow(int x, int y, int width, int[] dst) {
+        int xInContent = x - this.content.x;
+        int yInContent = y - this.content.y;
+        if (xInContent < 0 || yInContent < 0 || xInContent + width > this.content.width ||
+                yInContent >= this.content.height)
+        {
+            Image.super.getRGBRow(x, y, width, dst);
+            return;
+        }
+        this.pixels.get(yInContent * this.content.width + xInContent, dst, 0, width);
+    }
+
+    /**
+     * Method that returns the part of the image that holds the pixels of the picture
+     * @return the bounds of the content, without the padding
+     */
+    @Override
+    public Rectangle getContentBounds() {
+        return new Rectangle(this.content);
+    }
+}
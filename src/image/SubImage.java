@@ -3,10 +3,10 @@ package image;
 import java.awt.*;
 
 /**
- * A package private class that is a sub image from a big images, it's implements Image
+ * A package private class that is a sub image from a big images, it's implements Image.
+ * The sub image is a view over the big image - it holds only the offset and does not copy any pixel.
  */
 class SubImage implements Image{
-    private final Color[][] pixelArray;
     private final Image bigImage;
     private final int width;
     private final int height;
@@ -23,7 +23,6 @@ class SubImage implements Image{
      */
     public SubImage(Image bigImage, int width, int height, int xStart, int yStart)
             throws IllegalArgumentException {
-        this.pixelArray = new Color[height][width];
         this.bigImage = bigImage;
         this.width = width;
         this.height = height;
@@ -35,30 +34,54 @@ class SubImage implements Image{
         {
             throw new IllegalArgumentException("values must match the big image");
         }
-        this.subCreator();
     }
 
     /**
-     * A method that creates the sub image from the big image
+     * Returns the packed ARGB value of the pixel in the x,y coordinate
+     * @param x the x coordinate of the pixel
+     * @param y the y coordinate of the pixel
+     * @return the ARGB value in the coordinate
+     * @throws IndexOutOfBoundsException if the coordinate is outside of the sub image
      */
-    private void subCreator()
-    {
-        for (int row = 0; row < this.height; row++) {
-            for (int col = 0; col < this.width; col++) {
-                this.pixelArray[row][col] = this.bigImage.getPixel(xInBigImg+col,yInBigImg+row);
-            }
+    @Override
+    public int getRGB(int x, int y) {
+        if (x < 0 || y < 0 || x >= this.width || y >= this.height)
+        {
+            throw new IndexOutOfBoundsException("coordinate is outside of the sub image");
         }
+        return this.bigImage.getRGB(xInBigImg + x, yInBigImg + y);
     }
 
     /**
-     * Returns the pixel in the x,y coordinate
-     * @param x the x coordinate of the pixel
-     * @param y the y coordinate of the pixel
-     * @return the color in the coordinate
+     * Copies the packed ARGB values of a part of a row of the sub image from the big image
+     * @param x the x coordinate of the first pixel
+     * @param y the y coordinate of the row
+     * @param width the number of pixels to copy
+     * @param dst the array to copy the values to, from index 0
+     * @throws IndexOutOfBoundsException if the part of the row is outside of the sub image
+     */
+    @Override
+    public void getRGBRow(int x, int y, int width, int[] dst) {
+        if (x < 0 || y < 0 || width < 0 || x + width > this.width || y >= this.height)
+        {
+            throw new IndexOutOfBoundsException("row is outside of the sub image");
+        }
+        this.bigImage.getRGBRow(xInBigImg + x, yInBigImg + y, width, dst);
+    }
+
+    /**
+     * Returns the part of the sub image that holds the pixels of the picture of the big image
+     * @return the bounds of the picture inside the sub image, may be empty
      */
     @Override
-    public Color getPixel(int x, int y) {
-        return this.pixelArray[y][x];
+    public Rectangle getContentBounds() {
+        Rectangle bounds = this.bigImage.getContentBounds().intersection(
+                new Rectangle(xInBigImg, yInBigImg, this.width, this.height));
+        if (bounds.isEmpty()) {
+            return new Rectangle();
+        }
+        bounds.translate(-xInBigImg, -yInBigImg);
+        return bounds;
     }
 
     /**
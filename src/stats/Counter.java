@@ -0,0 +1,58 @@
+package stats;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The events of a conversion that are counted, without timing, since the start of the process (or the
+ * last reset).
+ */
+public enum Counter {
+    GLYPH_BRIGHTNESS_HITS("glyph brightness cache hits"),
+    GLYPH_BRIGHTNESS_MISSES("glyph brightness cache misses"),
+    GLYPH_BITMAP_HITS("glyph bitmap cache hits"),
+    GLYPH_BITMAP_MISSES("glyph bitmap cache misses"),
+    IMAGE_CACHE_HITS("decoded image cache hits"),
+    IMAGE_CACHE_MISSES("decoded image cache misses");
+
+    private final String label;
+    private final LongAdder count = new LongAdder();
+
+    /**
+     * The constructor of a counter
+     * @param label the name of the counter in reports
+     */
+    Counter(String label) {
+        this.label = label;
+    }
+
+    /**
+     * Getter for the name of the counter in reports
+     * @return the label
+     */
+    public String getLabel() {
+        return this.label;
+    }
+
+    /**
+     * Getter for the count
+     * @return the number of counted events
+     */
+    public long get() {
+        return this.count.sum();
+    }
+
+    /**
+     * Counts events
+     * @param events the number of events
+     */
+    public void add(long events) {
+        this.count.add(events);
+    }
+
+    /**
+     * Sets the count to 0
+     */
+    void reset() {
+        this.count.reset();
+    }
+}
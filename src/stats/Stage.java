@@ -0,0 +1,92 @@
+package stats;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The stages of a conversion that are timed, with the totals of the stage since the start of the
+ * process (or the last reset).
+ */
+public enum Stage {
+    DECODE("decode", "pixels"),
+    GLYPHS("glyph rendering", "glyphs"),
+    SUMMED_AREA("summed-area tables", "pixels"),
+    BRIGHTNESS("cell brightness", "cells"),
+    MATCH("matching", "cells"),
+    OUTPUT("output writing", "bytes");
+
+    private final String label;
+    private final String unit;
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder nanos = new LongAdder();
+    private final LongAdder items = new LongAdder();
+
+    /**
+     * The constructor of a stage
+     * @param label the name of the stage in reports
+     * @param unit the unit of the items the stage processes
+     */
+    Stage(String label, String unit) {
+        this.label = label;
+        this.unit = unit;
+    }
+
+    /**
+     * Getter for the name of the stage in reports
+     * @return the label
+     */
+    public String getLabel() {
+        return this.label;
+    }
+
+    /**
+     * Getter for the unit of the items the stage processes
+     * @return the unit
+     */
+    public String getUnit() {
+        return this.unit;
+    }
+
+    /**
+     * Getter for the number of times the stage ran
+     * @return the number of calls
+     */
+    public long getCalls() {
+        return this.calls.sum();
+    }
+
+    /**
+     * Getter for the total time of the stage
+     * @return the time in nanoseconds
+     */
+    public long getNanos() {
+        return this.nanos.sum();
+    }
+
+    /**
+     * Getter for the total number of items the stage processed
+     * @return the number of items
+     */
+    public long getItems() {
+        return this.items.sum();
+    }
+
+    /**
+     * Adds one run of the stage to the totals
+     * @param nanos the time of the run in nanoseconds
+     * @param items the number of items the run processed
+     */
+    void add(long nanos, long items) {
+        this.calls.increment();
+        this.nanos.add(nanos);
+        this.items.add(items);
+    }
+
+    /**
+     * Sets the totals of the stage to 0
+     */
+    void reset() {
+        this.calls.reset();
+        this.nanos.reset();
+        this.items.reset();
+    }
+}
@@ -0,0 +1,35 @@
+package stats;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * The Flight Recorder event of one run of a stage. It is recorded whenever a recording is started, for
+ * example with "jcmd &lt;pid&gt; JFR.start". While no recording wants it, Stats times the stages with
+ * timers that are reused and never committed, so it costs two System.nanoTime calls and no allocation.
+ */
+@Name("ascii_art.Stage")
+@Label("Conversion Stage")
+@Category("Image To Ascii")
+@Description("One run of a stage of the conversion of an image to ascii art")
+@StackTrace(false)
+public class StageEvent extends Event {
+    @Label("Stage")
+    String stage;
+
+    @Label("Items")
+    @Description("The number of items the stage processed")
+    long items;
+
+    @Label("Unit")
+    String unit;
+
+    transient Stage timedStage; // transient fields are not recorded
+    transient long startNanos;
+    transient boolean reused; // a timer of Stats that is never committed
+    transient boolean running; // a reused timer that is timing a run
+}
@@ -0,0 +1,133 @@
+package stats;
+
+import jdk.jfr.EventType;
+import jdk.jfr.FlightRecorder;
+
+/**
+ * Facade for the instrumentation of the conversion. A stage is timed with
+ *     StageEvent timer = Stats.begin(Stage.MATCH);
+ *     ...
+ *     Stats.end(timer, cells);
+ * which adds to the totals of the stage and emits a Flight Recorder event when a recording is running.
+ * While no recording wants the events, every thread reuses one timer for every stage, so timing a stage
+ * allocates nothing. A timer is reused only after end, so a run that can throw ends it in a finally block.
+ */
+public class Stats {
+    private static final double NANOS_PER_MILLI = 1e6;
+    private static final String STAGE_HEADER = String.format("%-20s %8s %12s %12s %16s%n",
+            "stage", "calls", "total ms", "mean ms", "items");
+    private static final String STAGE_LINE = "%-20s %8d %12.3f %12.3f %16d %s%n";
+    private static final String COUNTER_LINE = "%-32s %16d%n";
+    /** the timers that are reused while no recording wants the events, one for every stage */
+    private static final ThreadLocal<StageEvent[]> IDLE_TIMERS =
+            ThreadLocal.withInitial(() -> new StageEvent[Stage.values().length]);
+
+    private static volatile EventType stageEventType; // looked up only after Flight Recorder starts
+
+    private Stats() {
+    }
+
+    /**
+     * Starts timing a run of a stage
+     * @param stage the stage
+     * @return the timer of the run, to pass to end
+     */
+    public static StageEvent begin(Stage stage) {
+        StageEvent timer = eventsEnabled() ? null : idleTimer(stage);
+        if (timer == null) {
+            timer = new StageEvent();
+            timer.begin();
+        }
+        timer.timedStage = stage;
+        timer.startNanos = System.nanoTime();
+        return timer;
+    }
+
+    /**
+     * Function that checks if a running recording wants the events of the stages. Looking up the event
+     * type starts Flight Recorder, so it is looked up only after Flight Recorder was started elsewhere.
+     * @return true if the events are enabled
+     */
+    private static boolean eventsEnabled() {
+        if (!FlightRecorder.isInitialized()) {
+            return false;
+        }
+        EventType type = stageEventType;
+        if (type == null) {
+            type = EventType.getEventType(StageEvent.class);
+            stageEventType = type;
+        }
+        return type.isEnabled();
+    }
+
+    /**
+     * Function that takes the reused timer of a stage on the current thread
+     * @param stage the stage
+     * @return the timer, or null if it is already timing the same stage (a stage nested in itself)
+     */
+    private static StageEvent idleTimer(Stage stage) {
+        StageEvent[] timers = IDLE_TIMERS.get();
+        StageEvent timer = timers[stage.ordinal()];
+        if (timer == null) {
+            timer = new StageEvent();
+            timer.reused = true;
+            timers[stage.ordinal()] = timer;
+        } else if (timer.running) {
+            return null;
+        }
+        timer.running = true;
+        return timer;
+    }
+
+    /**
+     * Ends timing a run of a stage
+     * @param timer the timer that begin returned
+     * @param items the number of items the run processed, in the unit of the stage
+     */
+    public static void end(StageEvent timer, long items) {
+        long nanos = System.nanoTime() - timer.startNanos;
+        Stage stage = timer.timedStage;
+        stage.add(nanos, items);
+        if (timer.reused) {
+            timer.running = false; // no recording wanted the event when the run began
+            return;
+        }
+        timer.end();
+        if (timer.shouldCommit()) {
+            timer.stage = stage.getLabel();
+            timer.items = items;
+            timer.unit = stage.getUnit();
+            timer.commit();
+        }
+    }
+
+    /**
+     * Sets all the totals and counters to 0
+     */
+    public static void reset() {
+        for (Stage stage : Stage.values()) {
+            stage.reset();
+        }
+        for (Counter counter : Counter.values()) {
+            counter.reset();
+        }
+    }
+
+    /**
+     * Formats the totals of every stage and every counter as a table
+     * @return the report
+     */
+    public static String report() {
+        StringBuilder report = new StringBuilder(STAGE_HEADER);
+        for (Stage stage : Stage.values()) {
+            long calls = stage.getCalls();
+            double totalMillis = stage.getNanos() / NANOS_PER_MILLI;
+            report.append(String.format(STAGE_LINE, stage.getLabel(), calls, totalMillis,
+                    calls == 0 ? 0 : totalMillis / calls, stage.getItems(), stage.getUnit()));
+        }
+        for (Counter counter : Counter.values()) {
+            report.append(String.format(COUNTER_LINE, counter.getLabel(), counter.get()));
+        }
+        return report.toString();
+    }
+}
@@ -0,0 +1,36 @@
+package ascii_art.img_to_char;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.BitSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Tests the set of characters that the brightness matcher matches.
+ */
+class BrightnessImgCharMatcherTest {
+    private static final String FONT = "Courier New";
+
+    /**
+     * Checks that charSetAdder adds the characters to the ones that were added before
+     */
+    @Test
+    void charSetAdderAddsToTheCharset() {
+        BrightnessImgCharMatcher matcher = new BrightnessImgCharMatcher(FONT);
+        matcher.charSetAdder(new Character[]{'#', '.'});
+        matcher.charSetAdder(new Character[]{'.', '@'});
+        assertEquals(3, matcher.quantizer(new BitSet()).size());
+    }
+
+    /**
+     * Checks that matching with another set of characters replaces the set
+     */
+    @Test
+    void matchingReplacesTheCharset() {
+        BrightnessImgCharMatcher matcher = new BrightnessImgCharMatcher(FONT);
+        matcher.charSetAdder(new Character[]{'#', '.', '@'});
+        matcher.chooseChars(new float[][]{{0.5f}}, new Character[]{'#'});
+        assertEquals(1, matcher.quantizer(new BitSet()).size());
+    }
+}
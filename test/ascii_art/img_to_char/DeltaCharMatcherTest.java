@@ -0,0 +1,101 @@
+package ascii_art.img_to_char;
+
+import image.Image;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Tests that the delta matcher renders the grid of a full render.
+ */
+class DeltaCharMatcherTest {
+    private static final String FONT = "Courier New";
+    private static final Character[] CHARSET = {' ', '.', ':', '+', '#', '@'};
+    private static final int WIDTH = 100;
+    private static final int HEIGHT = 70;
+
+    /**
+     * Checks that every frame of a delta render has the chars of a full render of the same frame, on a
+     * grid whose cells are fractional
+     */
+    @Test
+    void deltaRenderMatchesFullRender() {
+        DeltaCharMatcher delta = new DeltaCharMatcher(FONT);
+        int numCharsInRow = 30;
+        int numRows = 17;
+        for (int frame = 0; frame < 3; frame++) {
+            Image img = new ShiftedImage(frame);
+            BrightnessImgCharMatcher full = new BrightnessImgCharMatcher(img, FONT);
+            char[][] expected = full.chooseChars(full.cellBrightness(numCharsInRow, numRows), CHARSET);
+            assertArrayEquals(expected, delta.chooseChars(img, numCharsInRow, numRows, CHARSET),
+                    "frame " + frame);
+        }
+    }
+
+    /**
+     * Checks that the rows of the default grid keep the proportions of the image
+     */
+    @Test
+    void defaultGridKeepsTheProportions() {
+        char[][] chars = new DeltaCharMatcher(FONT).chooseChars(new ShiftedImage(0), 20, CHARSET);
+        assertEquals(14, chars.length);
+        assertEquals(20, chars[0].length);
+    }
+
+    /**
+     * Checks that an empty grid can be rendered again
+     */
+    @Test
+    void emptyGridRendersAgain() {
+        DeltaCharMatcher delta = new DeltaCharMatcher(FONT);
+        assertEquals(0, delta.chooseChars(new ShiftedImage(0), 10, 0, CHARSET).length);
+        assertEquals(0, delta.chooseChars(new ShiftedImage(1), 10, 0, CHARSET).length);
+        assertEquals(0, delta.getChangedCount());
+    }
+
+    /**
+     * An image with a horizontal gradient that moves to the right from frame to frame
+     */
+    private static final class ShiftedImage implements Image {
+        private final int shift;
+
+        /**
+         * The constructor of the image
+         * @param shift the number of pixels the gradient moved
+         */
+        private ShiftedImage(int shift) {
+            this.shift = shift;
+        }
+
+        /**
+         * Returns the packed ARGB value of a pixel
+         * @param x the x coordinate of the pixel
+         * @param y the y coordinate of the pixel
+         * @return the ARGB value in the coordinate
+         */
+        @Override
+        public int getRGB(int x, int y) {
+            int grey = ((x + this.shift) * 255 / WIDTH + y) & 0xFF;
+            return 0xFF000000 | (grey << 16) | (grey << 8) | grey;
+        }
+
+        /**
+         * Getter for the width of the image
+         * @return the width of the image
+         */
+        @Override
+        public int getWidth() {
+            return WIDTH;
+        }
+
+        /**
+         * Getter for the height of the image
+         * @return the height of the image
+         */
+        @Override
+        public int getHeight() {
+            return HEIGHT;
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package ascii_art.img_to_char;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Tests that the vector and the scalar luminance kernels compute the same grey values.
+ */
+class LuminanceKernelTest {
+    private static final String VECTOR_MODULE = "jdk.incubator.vector";
+    /** every length up to here, so every tail of every vector size (up to 512 bits) is covered */
+    private static final int MAX_SHORT_LENGTH = 70;
+    private static final int[] LONG_LENGTHS = {1023, 1024, 1025, 4099};
+    private static final int PADDING = 5; // pixels after the length, that must not change
+    private static final long SEED = 20261018L;
+
+    /**
+     * Compares both kernels on random rows of every short length and of a few long odd and even lengths
+     */
+    @Test
+    void vectorKernelMatchesScalarKernel() {
+        assumeTrue(ModuleLayer.boot().findModule(VECTOR_MODULE).isPresent(),
+                "the JVM was started without " + VECTOR_MODULE);
+        LuminanceKernel vector = LuminanceKernels.select(true, true);
+        assertInstanceOf(VectorLuminanceKernel.class, vector);
+        LuminanceKernel scalar = new ScalarLuminanceKernel();
+
+        Random random = new Random(SEED);
+        for (int length = 0; length <= MAX_SHORT_LENGTH; length++) {
+            assertSameGreyValues(vector, scalar, randomRow(random, length + PADDING), length);
+        }
+        for (int length : LONG_LENGTHS) {
+            assertSameGreyValues(vector, scalar, randomRow(random, length + PADDING), length);
+        }
+    }
+
+    /**
+     * Compares both kernels on the extreme colors, where the products are the largest
+     */
+    @Test
+    void vectorKernelMatchesScalarKernelOnExtremeColors() {
+        assumeTrue(ModuleLayer.boot().findModule(VECTOR_MODULE).isPresent(),
+                "the JVM was started without " + VECTOR_MODULE);
+        int[] row = {0xFFFFFFFF, 0x00FFFFFF, 0xFF000000, 0, 0xFFFF0000, 0xFF00FF00, 0xFF0000FF, 0x80808080,
+                0x7FFFFFFF, 0x80000000, 0xFFFFFFFF};
+        assertSameGreyValues(LuminanceKernels.select(true, true), new ScalarLuminanceKernel(), row,
+                row.length);
+    }
+
+    /**
+     * Checks that the scalar kernel computes the grey values of SummedAreaTable.greyValue
+     */
+    @Test
+    void scalarKernelComputesGreyValue() {
+        int[] row = randomRow(new Random(SEED), MAX_SHORT_LENGTH);
+        int[] expected = row.clone();
+        new ScalarLuminanceKernel().greyValues(row, row.length);
+        for (int i = 0; i < row.length; i++) {
+            assertEquals(SummedAreaTable.greyValue(expected[i]), row[i], "pixel " + i);
+        }
+    }
+
+    /**
+     * Converts a copy of a row with each kernel and checks that the results are identical, and that the
+     * pixels after the length did not change
+     * @param vector the vector kernel
+     * @param scalar the scalar kernel
+     * @param row the packed ARGB pixels
+     * @param length the number of pixels to convert
+     */
+    private static void assertSameGreyValues(LuminanceKernel vector, LuminanceKernel scalar, int[] row,
+                                             int length) {
+        int[] vectorRow = row.clone();
+        int[] scalarRow = row.clone();
+        vector.greyValues(vectorRow, length);
+        scalar.greyValues(scalarRow, length);
+        assertArrayEquals(scalarRow, vectorRow, "length " + length);
+        for (int i = length; i < row.length; i++) {
+            assertEquals(row[i], vectorRow[i], "pixel " + i + " after length " + length);
+        }
+    }
+
+    /**
+     * Function that creates a row of random packed ARGB pixels
+     * @param random the source of the pixels
+     * @param length the number of pixels
+     * @return the row
+     */
+    private static int[] randomRow(Random random, int length) {
+        int[] row = new int[length];
+        for (int i = 0; i < length; i++) {
+            row[i] = random.nextInt();
+        }
+        return row;
+    }
+}
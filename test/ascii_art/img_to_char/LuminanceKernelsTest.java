@@ -0,0 +1,45 @@
+package ascii_art.img_to_char;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+
+/**
+ * Tests the selection of the luminance kernel. The build runs these tests once on a JVM with the vector
+ * module and once on a JVM without it.
+ */
+class LuminanceKernelsTest {
+    private static final String VECTOR_MODULE = "jdk.incubator.vector";
+    private static final String SIMD_PROPERTY = "ascii_art.simd";
+
+    /**
+     * Checks that the kernel of the process is the vector kernel exactly when the module is present and
+     * SIMD is not turned off
+     */
+    @Test
+    void processKernelFollowsTheVectorModule() {
+        boolean vectorModule = ModuleLayer.boot().findModule(VECTOR_MODULE).isPresent();
+        boolean simd = Boolean.parseBoolean(System.getProperty(SIMD_PROPERTY, "true"));
+        if (vectorModule && simd) {
+            assertInstanceOf(VectorLuminanceKernel.class, LuminanceKernels.get());
+        } else {
+            assertInstanceOf(ScalarLuminanceKernel.class, LuminanceKernels.get());
+        }
+    }
+
+    /**
+     * Checks that the scalar kernel is chosen without the vector module, even when SIMD is allowed
+     */
+    @Test
+    void fallsBackToScalarWithoutVectorModule() {
+        assertInstanceOf(ScalarLuminanceKernel.class, LuminanceKernels.select(true, false));
+    }
+
+    /**
+     * Checks that turning SIMD off chooses the scalar kernel, even when the vector module is present
+     */
+    @Test
+    void simdOffForcesScalar() {
+        assertInstanceOf(ScalarLuminanceKernel.class, LuminanceKernels.select(false, true));
+    }
+}
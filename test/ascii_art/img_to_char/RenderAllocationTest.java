@@ -0,0 +1,154 @@
+package ascii_art.img_to_char;
+
+import ascii_output.ConsoleAsciiOutput;
+import image.Image;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.BitSet;
+
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Tests that a steady-state render, that matches into the array of the last render and writes it to a
+ * console, allocates nothing. The stage timers of Stats are reused while no recording wants their events,
+ * so they are part of the measured render.
+ */
+class RenderAllocationTest {
+    private static final String FONT = "Courier New";
+    private static final int IMAGE_SIZE = 256;
+    private static final int CHARS_IN_ROW = 64;
+    private static final int ROWS = 40; // not a divisor of the image, so the cells are fractional
+    private static final int WARMUP_RENDERS = 20_000; // enough for the render to be compiled
+    private static final int MEASURED_RENDERS = 2_000;
+    /** the allowed average per render, it leaves room for the measurement itself and nothing else */
+    private static final long MAX_BYTES_PER_RENDER = 16;
+
+    private static com.sun.management.ThreadMXBean threads;
+
+    /**
+     * Finds the allocation counter of the threads, the tests are skipped when the JVM has none
+     */
+    @BeforeAll
+    static void findAllocationCounter() {
+        assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean,
+                "the JVM does not count the allocations of threads");
+        threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threads.isThreadAllocatedMemorySupported(), "the JVM does not count allocations");
+        threads.setThreadAllocatedMemoryEnabled(true);
+    }
+
+    /**
+     * Checks every dithering of a match of a brightness grid, the way the shell matches its kept grids
+     */
+    @Test
+    void gridRenderAllocatesNothing() {
+        for (Dithering dithering : Dithering.values()) {
+            Renderer renderer = new Renderer(dithering);
+            float[][] brightness = renderer.matcher.cellBrightness(CHARS_IN_ROW, ROWS);
+            assertSteadyRenderAllocatesNothing(dithering + " grid", () -> renderer.render(
+                    renderer.matcher.chooseChars(brightness, renderer.charset, renderer.chars)));
+        }
+    }
+
+    /**
+     * Checks the Floyd-Steinberg match straight from the image, that calculates the brightness of every
+     * row into a reused row
+     */
+    @Test
+    void diffusionFromImageAllocatesNothing() {
+        Renderer renderer = new Renderer(Dithering.FLOYD_STEINBERG);
+        assertSteadyRenderAllocatesNothing("image", () -> renderer.render(
+                renderer.matcher.chooseChars(CHARS_IN_ROW, ROWS, renderer.charset, renderer.chars)));
+    }
+
+    /**
+     * Renders until the render is compiled, then checks the average allocation of the next renders
+     * @param name the name of the render in the failure message
+     * @param render one render
+     */
+    private static void assertSteadyRenderAllocatesNothing(String name, Runnable render) {
+        for (int i = 0; i < WARMUP_RENDERS; i++) {
+            render.run();
+        }
+        long threadId = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < MEASURED_RENDERS; i++) {
+            render.run();
+        }
+        long bytesPerRender = (threads.getThreadAllocatedBytes(threadId) - before) / MEASURED_RENDERS;
+        assertTrue(bytesPerRender <= MAX_BYTES_PER_RENDER,
+                name + " render allocated " + bytesPerRender + " bytes");
+    }
+
+    /**
+     * A matcher and a console that discards its bytes, with the array of chars of the last render
+     */
+    private static final class Renderer {
+        private final BrightnessImgCharMatcher matcher;
+        private final BitSet charset;
+        private final ConsoleAsciiOutput console;
+        private char[][] chars;
+
+        /**
+         * The constructor of the renderer, it renders once so the next renders reuse the array of chars
+         * @param dithering the dithering of the matches
+         */
+        private Renderer(Dithering dithering) {
+            this.matcher = new BrightnessImgCharMatcher(new GradientImage(), FONT);
+            this.matcher.setDithering(dithering);
+            this.charset = new BitSet();
+            this.charset.set(' ', '~' + 1);
+            this.console = new ConsoleAsciiOutput(OutputStream.nullOutputStream(), StandardCharsets.UTF_8);
+            this.chars = this.matcher.chooseChars(CHARS_IN_ROW, ROWS, this.charset, null);
+        }
+
+        /**
+         * Writes the chars of a render, that must be the array of the last render
+         * @param rendered the chars of the render
+         */
+        private void render(char[][] rendered) {
+            assertSame(this.chars, rendered);
+            this.console.output(rendered);
+        }
+    }
+
+    /**
+     * A square image with a diagonal gradient of colors, so the cells have many brightnesses
+     */
+    private static final class GradientImage implements Image {
+        /**
+         * Returns the packed ARGB value of a pixel, red grows to the right and green grows down
+         * @param x the x coordinate of the pixel
+         * @param y the y coordinate of the pixel
+         * @return the ARGB value in the coordinate
+         */
+        @Override
+        public int getRGB(int x, int y) {
+            return 0xFF000000 | (x << 16) | (y << 8) | ((x + y) / 2);
+        }
+
+        /**
+         * Getter for the width of the image
+         * @return the width of the image
+         */
+        @Override
+        public int getWidth() {
+            return IMAGE_SIZE;
+        }
+
+        /**
+         * Getter for the height of the image
+         * @return the height of the image
+         */
+        @Override
+        public int getHeight() {
+            return IMAGE_SIZE;
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package ascii_art.img_to_char;
+
+import image.Image;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tests the shape matcher that shares the summed-area table of a brightness matcher.
+ */
+class ShapeImgCharMatcherTest {
+    private static final String FONT = "Courier New";
+    private static final Character[] CHARSET = {' ', '-', '|', '/', '\\', '#'};
+    private static final int SIZE = 64;
+
+    /**
+     * Checks that a matcher that shares the table of a brightness matcher chooses the chars of a matcher
+     * with its own table, and that the brightness matcher keeps one table
+     */
+    @Test
+    void sharedTableMatchesOwnTable() {
+        Image img = new StripesImage();
+        BrightnessImgCharMatcher brightnessMatcher = new BrightnessImgCharMatcher(img, FONT);
+        ShapeImgCharMatcher shared = new ShapeImgCharMatcher(brightnessMatcher, FONT);
+        ShapeImgCharMatcher own = new ShapeImgCharMatcher(img, FONT);
+        assertArrayEquals(own.chooseChars(16, 9, CHARSET), shared.chooseChars(16, 9, CHARSET));
+        SummedAreaTable table = brightnessMatcher.brightnessTable();
+        brightnessMatcher.cellBrightness(16, 9);
+        assertSame(table, brightnessMatcher.brightnessTable());
+    }
+
+    /**
+     * Checks that a first match without chars is rejected like a brightness match without chars
+     */
+    @Test
+    void emptyCharsetIsRejected() {
+        Image img = new StripesImage();
+        IllegalArgumentException shape = assertThrows(IllegalArgumentException.class,
+                () -> new ShapeImgCharMatcher(img, FONT).chooseChars(8, new Character[0]));
+        IllegalArgumentException brightness = assertThrows(IllegalArgumentException.class,
+                () -> new BrightnessImgCharMatcher(img, FONT).chooseChars(8, new Character[0]));
+        assertEquals(brightness.getMessage(), shape.getMessage());
+    }
+
+    /**
+     * A square image of diagonal black and white stripes
+     */
+    private static final class StripesImage implements Image {
+        /**
+         * Returns the packed ARGB value of a pixel
+         * @param x the x coordinate of the pixel
+         * @param y the y coordinate of the pixel
+         * @return the ARGB value in the coordinate
+         */
+        @Override
+        public int getRGB(int x, int y) {
+            return ((x + y) / 4) % 2 == 0 ? 0xFF000000 : 0xFFFFFFFF;
+        }
+
+        /**
+         * Getter for the width of the image
+         * @return the width of the image
+         */
+        @Override
+        public int getWidth() {
+            return SIZE;
+        }
+
+        /**
+         * Getter for the height of the image
+         * @return the height of the image
+         */
+        @Override
+        public int getHeight() {
+            return SIZE;
+        }
+    }
+}